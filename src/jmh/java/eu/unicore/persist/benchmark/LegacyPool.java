@@ -0,0 +1,136 @@
+package eu.unicore.persist.benchmark;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.ConnectionEvent;
+import javax.sql.ConnectionEventListener;
+import javax.sql.ConnectionPoolDataSource;
+import javax.sql.PooledConnection;
+
+/**
+ * the previous, monitor-based connection pool, kept only as a baseline for
+ * {@link PoolBenchmark}. Like the old <code>PersistImpl.getConnection()</code>,
+ * checking out a connection is additionally synchronized on the caller.
+ * <p>
+ * Based on the MiniConnectionPoolManager by Christian d'Heureuse,
+ * Inventec Informatik AG, Zurich, Switzerland
+ * (<a href="http://www.source-code.biz">www.source-code.biz</a>).
+ * Multi-licensed: EPL/LGPL/MPL.
+ */
+public class LegacyPool {
+
+	private final ConnectionPoolDataSource dataSource;
+	private final int maxConnections;
+	private final int timeout;
+	private final Semaphore semaphore;
+	private final Queue<PooledConnection> recycledConnections;
+	private int activeConnections;
+	private final PoolConnectionEventListener poolConnectionEventListener;
+	private boolean isDisposed;
+
+	public LegacyPool(ConnectionPoolDataSource dataSource, int maxConnections, int timeout) {
+		this.dataSource = dataSource;
+		this.maxConnections = maxConnections;
+		this.timeout = timeout;
+		semaphore = new Semaphore(maxConnections, true);
+		recycledConnections = new LinkedList<PooledConnection>();
+		poolConnectionEventListener = new PoolConnectionEventListener();
+	}
+
+	public synchronized void dispose() throws SQLException {
+		if (!isDisposed) {
+			isDisposed = true;
+			while (!recycledConnections.isEmpty()) {
+				recycledConnections.remove().close();
+			}
+		}
+	}
+
+	/**
+	 * checks out a connection the way the old <code>PersistImpl.getConnection()</code> did,
+	 * i.e. synchronized on the owner of the pool
+	 */
+	public Connection getConnection(Object owner) throws SQLException {
+		synchronized (owner) {
+			return getConnection();
+		}
+	}
+
+	public Connection getConnection() throws SQLException {
+		synchronized (this) {
+			if (isDisposed)
+				throw new IllegalStateException("Connection pool has been disposed.");
+		}
+		try {
+			if (!semaphore.tryAcquire(timeout, TimeUnit.SECONDS))
+				throw new SQLException("Timeout while waiting for a free database connection.");
+		} catch (InterruptedException e) {
+			throw new SQLException("Interrupted while waiting for a database connection.", e);
+		}
+		boolean ok = false;
+		try {
+			Connection conn = getConnection2();
+			ok = true;
+			return conn;
+		} finally {
+			if (!ok)
+				semaphore.release();
+		}
+	}
+
+	private synchronized Connection getConnection2() throws SQLException {
+		if (isDisposed)
+			throw new IllegalStateException("Connection pool has been disposed.");
+		PooledConnection pconn;
+		if (!recycledConnections.isEmpty()) {
+			pconn = recycledConnections.remove();
+		} else {
+			pconn = dataSource.getPooledConnection();
+		}
+		Connection conn = pconn.getConnection();
+		activeConnections++;
+		pconn.addConnectionEventListener(poolConnectionEventListener);
+		return conn;
+	}
+
+	private synchronized void recycleConnection(PooledConnection pconn) {
+		if (isDisposed) {
+			disposeConnection(pconn);
+			return;
+		}
+		activeConnections--;
+		semaphore.release();
+		recycledConnections.add(pconn);
+	}
+
+	private synchronized void disposeConnection(PooledConnection pconn) {
+		activeConnections--;
+		semaphore.release();
+		try {
+			pconn.close();
+		} catch (Exception e) {}
+	}
+
+	private class PoolConnectionEventListener implements ConnectionEventListener {
+
+		@Override
+		public void connectionClosed(ConnectionEvent event) {
+			PooledConnection pconn = (PooledConnection) event.getSource();
+			pconn.removeConnectionEventListener(this);
+			recycleConnection(pconn);
+		}
+
+		@Override
+		public void connectionErrorOccurred(ConnectionEvent event) {
+			PooledConnection pconn = (PooledConnection) event.getSource();
+			pconn.removeConnectionEventListener(this);
+			disposeConnection(pconn);
+		}
+	}
+
+}
@@ -0,0 +1,67 @@
+package eu.unicore.persist.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import eu.unicore.persist.ObjectMarshaller;
+import eu.unicore.persist.impl.BinaryMarshaller;
+import eu.unicore.persist.impl.Dao1;
+import eu.unicore.persist.impl.JSONMarshaller;
+
+/**
+ * measures encoding and decoding of entities
+ *
+ * @author schuller
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MarshallerBenchmark {
+
+	@Param({"json", "binary"})
+	public String marshaller;
+
+	@Param({"100", "10000"})
+	public int dataSize;
+
+	private ObjectMarshaller<Dao1> m;
+
+	private Dao1 dao;
+
+	private byte[] encoded;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		m = "json".equals(marshaller) ? new JSONMarshaller<>(Dao1.class) : new BinaryMarshaller<>(Dao1.class);
+		dao = new Dao1();
+		dao.setId("1");
+		dao.setData("x".repeat(dataSize));
+		encoded = m.serialize(dao);
+	}
+
+	@Benchmark
+	public byte[] encode() {
+		return m.serialize(dao);
+	}
+
+	@Benchmark
+	public Dao1 decode() {
+		return m.deserialize(encoded);
+	}
+
+}
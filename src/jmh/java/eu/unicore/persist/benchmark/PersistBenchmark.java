@@ -0,0 +1,154 @@
+package eu.unicore.persist.benchmark;
+
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import eu.unicore.persist.Persist;
+import eu.unicore.persist.PersistenceProperties;
+import eu.unicore.persist.impl.Dao1;
+
+/**
+ * benchmarks the main {@link Persist} operations. The number of threads
+ * can be set using the JMH "-t" option.
+ *
+ * @author schuller
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PersistBenchmark {
+
+	@Param({"InMemory", "H2Persist"})
+	public String implementation;
+
+	@Param({"100", "10000"})
+	public int dataSize;
+
+	@Param({"1000"})
+	public int entities;
+
+	// number of distinct values of the indexed "other" column
+	private static final int GROUPS = 10;
+
+	private Persist<Dao1> cached;
+
+	private Persist<Dao1> uncached;
+
+	private String data;
+
+	@State(Scope.Thread)
+	public static class ThreadState {
+
+		private final Random rand = new Random();
+
+		private final String prefix = UUID.randomUUID().toString();
+
+		private long counter = 0;
+
+		String existingID(int entities) {
+			return String.valueOf(rand.nextInt(entities));
+		}
+
+		String newID() {
+			return prefix+"-"+(counter++);
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		data = "x".repeat(dataSize);
+		cached = create("bench_cached", true);
+		uncached = create("bench_uncached", false);
+	}
+
+	@SuppressWarnings("unchecked")
+	private Persist<Dao1> create(String table, boolean caching) throws Exception {
+		Class<?> clazz = Class.forName("eu.unicore.persist.impl."+implementation);
+		Persist<Dao1> p = (Persist<Dao1>)clazz.getConstructor(Class.class, String.class).newInstance(Dao1.class, table);
+		PersistenceProperties config = new PersistenceProperties();
+		config.setDatabaseDirectory("target/benchmark_data");
+		config.setProperty(PersistenceProperties.DB_POOL_MAXSIZE, "16");
+		config.setProperty(PersistenceProperties.DB_CACHE_MAX_SIZE, String.valueOf(2*entities));
+		p.setConfigSource(config);
+		p.setCaching(caching);
+		p.init();
+		p.removeAll();
+		for(int i=0; i<entities; i++){
+			p.write(createDao(String.valueOf(i)));
+		}
+		return p;
+	}
+
+	private Dao1 createDao(String id) {
+		Dao1 d = new Dao1();
+		d.setId(id);
+		d.setData(data);
+		d.setOther("group"+(Math.abs(id.hashCode()) % GROUPS));
+		return d;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		for(Persist<Dao1> p: List.of(cached, uncached)){
+			p.purge();
+			p.shutdown();
+		}
+	}
+
+	@Benchmark
+	public Dao1 readHit(ThreadState t) throws Exception {
+		return cached.read(t.existingID(entities));
+	}
+
+	@Benchmark
+	public Dao1 readMiss(ThreadState t) throws Exception {
+		return uncached.read(t.existingID(entities));
+	}
+
+	@Benchmark
+	public void writeInsert(ThreadState t) throws Exception {
+		uncached.write(createDao(t.newID()));
+	}
+
+	@Benchmark
+	public void writeUpdate(ThreadState t) throws Exception {
+		uncached.write(createDao(t.existingID(entities)));
+	}
+
+	@Benchmark
+	public Object getIDs() throws Exception {
+		return uncached.getIDs();
+	}
+
+	@Benchmark
+	public Object getIDsByColumn(ThreadState t) throws Exception {
+		return uncached.getIDs("other", "group"+t.rand.nextInt(GROUPS));
+	}
+
+	@Benchmark
+	public void lockCycle(ThreadState t) throws Exception {
+		Dao1 d = cached.getForUpdate(t.existingID(entities));
+		d.setOther("group"+t.rand.nextInt(GROUPS));
+		cached.write(d);
+	}
+
+}
@@ -0,0 +1,75 @@
+package eu.unicore.persist.benchmark;
+
+import java.sql.Connection;
+import java.util.concurrent.TimeUnit;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import eu.unicore.persist.util.Pool;
+
+/**
+ * measures checking out and returning connections under contention,
+ * with more threads than pooled connections. The current {@link Pool} is
+ * compared against the previous, monitor-based implementation ({@link LegacyPool}).
+ *
+ * @author schuller
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(64)
+public class PoolBenchmark {
+
+	@Param({"1", "4", "16"})
+	public int maxConnections;
+
+	@Param({"current", "legacy"})
+	public String implementation;
+
+	private Pool pool;
+
+	private LegacyPool legacyPool;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		JdbcDataSource ds = new JdbcDataSource();
+		ds.setURL("jdbc:h2:mem:poolbenchmark;DB_CLOSE_DELAY=-1");
+		if("legacy".equals(implementation)){
+			legacyPool = new LegacyPool(ds, maxConnections, 60);
+		}
+		else{
+			pool = new Pool(ds, maxConnections);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		if(pool!=null)pool.dispose();
+		if(legacyPool!=null)legacyPool.dispose();
+	}
+
+	@Benchmark
+	public void getConnection() throws Exception {
+		try(Connection c = legacyPool!=null ? legacyPool.getConnection(this) : pool.getConnection()){
+			c.getAutoCommit();
+		}
+	}
+
+}
@@ -0,0 +1,197 @@
+package eu.unicore.persist;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * non-blocking facade for a {@link Persist} instance, returning {@link CompletableFuture}s.<br/>
+ *
+ * Operations are run on a separate executor, using virtual threads if available. The number
+ * of operations running at the same time is limited (by default to the size of the connection pool),
+ * so that waiting operations do not run into the pool timeout. If too many operations are waiting,
+ * new ones are rejected, i.e. the returned future fails with a {@link RejectedExecutionException}.
+ *
+ * @param <T> the type of persistent Java entity
+ *
+ * @author schuller
+ */
+public class AsyncPersist<T> {
+
+	private final Persist<T> persist;
+
+	private final ExecutorService executor;
+
+	private final Semaphore running;
+
+	private final int maxPending;
+
+	private final AtomicInteger pending = new AtomicInteger();
+
+	/**
+	 * @param persist - the underlying persistence handler
+	 * @param executor - executor for running the operations
+	 * @param maxConcurrent - maximum number of operations running at the same time
+	 * @param maxPending - maximum number of submitted operations that have not completed yet
+	 */
+	public AsyncPersist(Persist<T> persist, ExecutorService executor, int maxConcurrent, int maxPending){
+		this.persist = persist;
+		this.executor = executor;
+		this.running = new Semaphore(maxConcurrent, true);
+		this.maxPending = maxPending;
+	}
+
+	/**
+	 * @param persist - the underlying persistence handler
+	 * @param threads - number of threads (0: use virtual threads, if available)
+	 * @param maxConcurrent - maximum number of operations running at the same time
+	 * @param maxPending - maximum number of submitted operations that have not completed yet
+	 */
+	public AsyncPersist(Persist<T> persist, int threads, int maxConcurrent, int maxPending){
+		this(persist, createExecutor(threads, maxConcurrent), maxConcurrent, maxPending);
+	}
+
+	/**
+	 * get the underlying (blocking) persistence handler
+	 */
+	public Persist<T> getPersist(){
+		return persist;
+	}
+
+	public CompletableFuture<T> read(String id){
+		return submit(() -> persist.read(id));
+	}
+
+	public CompletableFuture<Map<String,T>> readAll(Collection<String> ids){
+		return submit(() -> persist.readAll(ids));
+	}
+
+	public CompletableFuture<Void> write(T dao){
+		return submit(() -> {
+			persist.write(dao);
+			return null;
+		});
+	}
+
+	public CompletableFuture<Void> writeAll(Collection<T> daos){
+		return submit(() -> {
+			persist.writeAll(daos);
+			return null;
+		});
+	}
+
+	public CompletableFuture<Void> remove(String id){
+		return submit(() -> {
+			persist.remove(id);
+			return null;
+		});
+	}
+
+	public CompletableFuture<List<String>> getIDs(){
+		return submit(() -> persist.getIDs());
+	}
+
+	public CompletableFuture<List<String>> getIDs(String column, Object value){
+		return submit(() -> persist.getIDs(column, value));
+	}
+
+	public CompletableFuture<Integer> getRowCount(){
+		return submit(() -> persist.getRowCount());
+	}
+
+	public CompletableFuture<Integer> getRowCount(String column, Object value){
+		return submit(() -> persist.getRowCount(column, value));
+	}
+
+	/**
+	 * number of operations that were submitted, but have not completed yet
+	 */
+	public int getPending(){
+		return pending.get();
+	}
+
+	/**
+	 * stop the executor and shut down the underlying persistence handler
+	 */
+	public void shutdown() throws PersistenceException, SQLException {
+		executor.shutdown();
+		persist.shutdown();
+	}
+
+	@FunctionalInterface
+	public interface Operation<R> {
+		public R run() throws Exception;
+	}
+
+	/**
+	 * run an operation on the underlying persistence handler
+	 */
+	public <R> CompletableFuture<R> submit(Operation<R> operation){
+		CompletableFuture<R> result = new CompletableFuture<>();
+		if(pending.incrementAndGet()>maxPending){
+			pending.decrementAndGet();
+			result.completeExceptionally(new RejectedExecutionException(
+					"Too many pending operations (limit: "+maxPending+")"));
+			return result;
+		}
+		try{
+			executor.execute(() -> {
+				R value = null;
+				Throwable error = null;
+				try{
+					running.acquire();
+					try{
+						value = operation.run();
+					}finally{
+						running.release();
+					}
+				}catch(Throwable e){
+					error = e;
+				}
+				pending.decrementAndGet();
+				if(error!=null){
+					result.completeExceptionally(error);
+				}
+				else{
+					result.complete(value);
+				}
+			});
+		}catch(RejectedExecutionException e){
+			pending.decrementAndGet();
+			result.completeExceptionally(e);
+		}
+		return result;
+	}
+
+	/**
+	 * create an executor using virtual threads if available, or a fixed number of daemon threads
+	 *
+	 * @param threads - number of threads (0: use virtual threads, if available)
+	 * @param defaultThreads - number of threads if virtual threads are not available
+	 */
+	public static ExecutorService createExecutor(int threads, int defaultThreads){
+		if(threads<=0){
+			try{
+				return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+			}catch(ReflectiveOperationException e){
+				// Java 17
+				threads = defaultThreads;
+			}
+		}
+		final AtomicInteger count = new AtomicInteger();
+		ThreadFactory tf = r -> {
+			Thread t = new Thread(r, "unicore-persistence-async-"+count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		};
+		return Executors.newFixedThreadPool(Math.max(1, threads), tf);
+	}
+}
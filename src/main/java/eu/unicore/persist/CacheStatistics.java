@@ -0,0 +1,105 @@
+package eu.unicore.persist;
+
+/**
+ * snapshot of the statistics of the entity cache of a {@link Persist} instance
+ *
+ * @author schuller
+ */
+public class CacheStatistics {
+
+	private final long hits;
+
+	private final long misses;
+
+	private final long loads;
+
+	private final long totalLoadTime;
+
+	private final long evictions;
+
+	private final long size;
+
+	private final long estimatedBytes;
+
+	/**
+	 * @param hits - number of reads served from the cache
+	 * @param misses - number of reads not found in the cache
+	 * @param loads - number of reads from storage
+	 * @param totalLoadTime - time spent reading from storage, in nanoseconds
+	 * @param evictions - number of entries removed due to size limits or expiry
+	 * @param size - approximate number of cached entries
+	 * @param estimatedBytes - approximate size of the cached entries in bytes, -1 if not known
+	 */
+	public CacheStatistics(long hits, long misses, long loads, long totalLoadTime,
+			long evictions, long size, long estimatedBytes){
+		this.hits = hits;
+		this.misses = misses;
+		this.loads = loads;
+		this.totalLoadTime = totalLoadTime;
+		this.evictions = evictions;
+		this.size = size;
+		this.estimatedBytes = estimatedBytes;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	public long getRequests() {
+		return hits+misses;
+	}
+
+	/**
+	 * the fraction of cache lookups that were hits, or 1.0 if there were no lookups
+	 */
+	public double getHitRatio() {
+		long requests = getRequests();
+		return requests==0 ? 1.0 : (double)hits/requests;
+	}
+
+	public long getLoads() {
+		return loads;
+	}
+
+	/**
+	 * total time spent reading from storage, in nanoseconds
+	 */
+	public long getTotalLoadTime() {
+		return totalLoadTime;
+	}
+
+	/**
+	 * average time of a read from storage, in nanoseconds
+	 */
+	public double getAverageLoadTime() {
+		return loads==0 ? 0 : (double)totalLoadTime/loads;
+	}
+
+	public long getEvictions() {
+		return evictions;
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * approximate size of the cached entries in bytes. This is only known if
+	 * the cache is bounded by weight (see {@link PersistenceProperties#DB_CACHE_MAX_WEIGHT}),
+	 * otherwise -1 is returned
+	 */
+	public long getEstimatedBytes() {
+		return estimatedBytes;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("CacheStatistics[hits=%d, misses=%d, hitRatio=%.3f, loads=%d, averageLoadTime=%.0fns, "
+				+ "evictions=%d, size=%d, estimatedBytes=%d]",
+				hits, misses, getHitRatio(), loads, getAverageLoadTime(), evictions, size, estimatedBytes);
+	}
+}
@@ -0,0 +1,69 @@
+package eu.unicore.persist;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * a page of IDs, together with an opaque cursor for getting the next page.<br/>
+ *
+ * The cursor encodes the position of the last entry of the page (i.e. its creation time and ID),
+ * so getting the next page does not depend on that entry still existing.
+ *
+ * @see Persist#getIDPage(int, String, boolean)
+ *
+ * @author schuller
+ */
+public class IDPage {
+
+	private final List<String> ids;
+
+	private final String next;
+
+	/**
+	 * @param ids - the IDs on this page
+	 * @param next - cursor for the next page, or <code>null</code> if this is the last page
+	 */
+	public IDPage(List<String> ids, String next){
+		this.ids = Collections.unmodifiableList(ids);
+		this.next = next;
+	}
+
+	public List<String> getIDs(){
+		return ids;
+	}
+
+	/**
+	 * cursor for getting the next page, or <code>null</code> if this is the last page
+	 */
+	public String getNext(){
+		return next;
+	}
+
+	public boolean hasNext(){
+		return next!=null;
+	}
+
+	/**
+	 * create a cursor from the position (e.g. creation time) and ID of an entry
+	 */
+	public static String createCursor(String position, String id){
+		String c = position+"|"+id;
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(c.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * parse a cursor created by {@link #createCursor(String, String)}
+	 *
+	 * @return position and ID
+	 * @throws IllegalArgumentException if the cursor is invalid
+	 */
+	public static String[] parseCursor(String cursor){
+		String c = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+		int i = c.indexOf('|');
+		if(i<0)throw new IllegalArgumentException("Invalid cursor <"+cursor+">");
+		return new String[]{c.substring(0, i), c.substring(i+1)};
+	}
+
+}
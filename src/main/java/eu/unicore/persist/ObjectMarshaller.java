@@ -13,5 +13,14 @@ public interface ObjectMarshaller<T> {
 	public String encode(T input);
 	
 	public T decode(String input);
-	
+
+	/**
+	 * @return <code>true</code> if the data should be stored in binary form 
+	 * using {@link #serialize(Object)}, <code>false</code> if it should be stored 
+	 * as a string using {@link #encode(Object)}
+	 */
+	public default boolean isBinary() {
+		return false;
+	}
+
 }
@@ -1,12 +1,19 @@
 package eu.unicore.persist;
 
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import eu.unicore.persist.impl.LockSupport;
+import eu.unicore.persist.metrics.PersistMetrics;
 
 /**
  * Client interface to the persistence layer<br/>
@@ -29,6 +36,22 @@ public interface Persist<T> {
 	 * @return T
 	 */
 	public T read(String id)throws PersistenceException, SQLException;
+
+	/**
+	 * get several objects from the persistence layer for read-only access
+	 * 
+	 * @param ids - the IDs of the objects to read
+	 * @return a map of the existing objects keyed with their ID. IDs that do not exist are
+	 *         not contained in the map
+	 */
+	public default Map<String,T> readAll(Collection<String> ids)throws PersistenceException, SQLException{
+		Map<String,T> result = new HashMap<>();
+		for(String id: ids){
+			T dao = read(id);
+			if(dao!=null)result.put(id, dao);
+		}
+		return result;
+	}
 	
 	/**
 	 * Get an object from the persistence layer and aquire a write lock<br/>
@@ -133,6 +156,21 @@ public interface Persist<T> {
 	 */
 	public void write(T dao)throws PersistenceException, SQLException;
 	
+	/**
+	 * insert or update several entries at once. Implementations may use a single
+	 * transaction for writing all the entries.<br/>
+	 * 
+	 * As with {@link #write(Object)}, locks held via getForUpdate() are released
+	 * after writing
+	 * 
+	 * @param daos - the entries to write
+	 */
+	public default void writeAll(Collection<T> daos)throws PersistenceException, SQLException{
+		for(T dao: daos){
+			write(dao);
+		}
+	}
+
 
 	/**
 	 * delete the entry, but keep the lock.
@@ -167,6 +205,92 @@ public interface Persist<T> {
 		return getIDs();
 	}
 	
+	/**
+	 * get a page of IDs with the specified ordering. Entries with the same creation time
+	 * are ordered by their ID. To get the next page, pass in the cursor of the current page,
+	 * see {@link IDPage#getNext()}. Deleting entries (including the last one of the current
+	 * page) does not affect getting the next page.<br/>
+	 *
+	 * The default implementation uses the position in the list of all IDs as cursor,
+	 * so entries may be skipped if earlier entries have been deleted in the meantime.
+	 *
+	 * @param limit - the maximum number of IDs to return
+	 * @param cursor - the cursor of the previous page, or <code>null</code> to get the first page
+	 * @param oldestFirst - if true, the entries will be ordered by ascending creation time
+	 * @throws IllegalArgumentException if the cursor is invalid
+	 */
+	public default IDPage getIDPage(int limit, String cursor, boolean oldestFirst)throws PersistenceException, SQLException{
+		if(limit<1)throw new IllegalArgumentException("Limit must be positive");
+		long offset = 0;
+		if(cursor!=null){
+			try{
+				offset = Long.parseLong(IDPage.parseCursor(cursor)[0]);
+			}catch(NumberFormatException e){
+				throw new IllegalArgumentException("Invalid cursor <"+cursor+">");
+			}
+		}
+		List<String> ids;
+		try(Stream<String> all = streamIDs(oldestFirst)){
+			ids = all.skip(offset).limit(limit+1l).collect(Collectors.toList());
+		}
+		if(ids.size()<=limit)return new IDPage(ids, null);
+		ids = ids.subList(0, limit);
+		return new IDPage(ids, IDPage.createCursor(String.valueOf(offset+limit), ids.get(limit-1)));
+	}
+
+	/**
+	 * stream all IDs with the specified ordering, without reading all of them into memory.<br/>
+	 * The stream holds database resources, and MUST be closed after use, e.g.
+	 * <pre>
+	 *   try(Stream&lt;String&gt; ids = persist.streamIDs(true)){
+	 *     ...
+	 *   }
+	 * </pre>
+	 * The default implementation reads all IDs into memory using {@link #getIDs(boolean)}.
+	 *
+	 * @param oldestFirst - if true, the entries will be ordered by ascending creation time
+	 */
+	public default Stream<String> streamIDs(boolean oldestFirst)throws PersistenceException, SQLException{
+		return getIDs(oldestFirst).stream();
+	}
+
+	/**
+	 * stream all entries (in no particular order) for read-only access, without reading 
+	 * all of them into memory.<br/>
+	 * The stream holds database resources, and MUST be closed after use, e.g.
+	 * <pre>
+	 *   try(Stream&lt;Foo&gt; entries = persist.streamAll()){
+	 *     ...
+	 *   }
+	 * </pre>
+	 * Database errors while consuming the stream are thrown as {@link UncheckedPersistenceException},
+	 * other exceptions (e.g. an entry that cannot be decoded) only affect the current entry.<br/>
+	 * The default implementation reads the entries one by one using {@link #read(String)},
+	 * skipping entries that have been deleted in the meantime.
+	 */
+	public default Stream<T> streamAll()throws PersistenceException, SQLException{
+		return streamIDs(false).map(id -> {
+			try{
+				return read(id);
+			}catch(PersistenceException e){
+				throw new UncheckedPersistenceException(e);
+			}catch(SQLException e){
+				throw new UncheckedPersistenceException(new PersistenceException(e));
+			}
+		}).filter(Objects::nonNull);
+	}
+
+	/**
+	 * perform the given action for all entries (in no particular order)
+	 * 
+	 * @see #streamAll()
+	 */
+	public default void forEach(Consumer<T> action)throws PersistenceException, SQLException{
+		try(Stream<T> entries = streamAll()){
+			entries.forEach(action);
+		}
+	}
+
 	/**
 	 * get a list of dao IDs where a column has a certain value
 	 * 
@@ -237,6 +361,22 @@ public interface Persist<T> {
 	
 	public void setCaching(boolean value);
 
+	/**
+	 * get the statistics of the entity cache (all zero if caching is disabled).
+	 * The default implementation returns all zero
+	 */
+	public default CacheStatistics getCacheStatistics(){
+		return new CacheStatistics(0, 0, 0, 0, 0, 0, 0);
+	}
+
+	/**
+	 * get the operation counters and latencies. The default implementation
+	 * returns <code>null</code>, i.e. no metrics are available
+	 */
+	public default PersistMetrics getMetrics(){
+		return null;
+	}
+
 	/**
 	 * Purge persistent data (optional operation!)<br/>
 	 * Data will be physically deleted, so use VERY carefully.
@@ -11,6 +11,9 @@ import org.apache.logging.log4j.Logger;
 
 import eu.unicore.persist.impl.ClassScanner;
 import eu.unicore.persist.impl.H2Persist;
+import eu.unicore.persist.impl.PersistImpl;
+import eu.unicore.persist.metrics.PersistMetrics;
+import eu.unicore.persist.util.PoolRegistry;
 import eu.unicore.util.configuration.ConfigurationException;
 
 
@@ -23,6 +26,9 @@ public class PersistenceFactory {
 
 	private static final Logger logger = LogManager.getLogger("unicore.persistence,PersistenceFactory"); 
 	
+	// connection pools shared by tables on the same database
+	private static final PoolRegistry pools = new PoolRegistry();
+
 	private final PersistenceProperties config;
 	
 	private PersistenceFactory(PersistenceProperties config){
@@ -85,6 +91,27 @@ public class PersistenceFactory {
 		}
 	}
 
+	/**
+	 * create a non-blocking persistence handler for the given class storing data in the named table
+	 *
+	 * @param <T> - the type of java class to be persisted
+	 * @param daoClass - the Java class to be persisted
+	 * @param tableName - if null, it will be inferred from the daoClass
+	 * @return {@link AsyncPersist} wrapping the {@link Persist} implementation
+	 * @throws PersistenceException
+	 */
+	public <T> AsyncPersist<T> getAsyncPersist(Class<T> daoClass, String tableName) throws PersistenceException{
+		Persist<T> p = getPersist(daoClass, tableName);
+		String table = tableName!=null ? tableName : ClassScanner.getTableName(daoClass);
+		int threads = config.getSubkeyIntValue(PersistenceProperties.DB_ASYNC_THREADS, table);
+		int maxConcurrent = config.getSubkeyIntValue(PersistenceProperties.DB_ASYNC_MAX_CONCURRENT, table);
+		if(maxConcurrent<=0){
+			maxConcurrent = config.getSubkeyIntValue(PersistenceProperties.DB_POOL_MAXSIZE, table);
+		}
+		int maxPending = config.getSubkeyIntValue(PersistenceProperties.DB_ASYNC_MAX_PENDING, table);
+		return new AsyncPersist<>(p, threads, maxConcurrent, maxPending);
+	}
+
 	/**
 	 * create an instance of the persistence class
 	 * 
@@ -97,10 +124,28 @@ public class PersistenceFactory {
 			throws Exception {
 		Persist<T>p = implementation.getConstructor(Class.class, String.class).newInstance(daoClass, tableName);
 		p.setConfigSource(config);
+		if(p instanceof PersistImpl){
+			((PersistImpl<T>)p).setPoolRegistry(pools);
+		}
 		p.init();
+		PersistMetrics metrics = p.getMetrics();
+		if(metrics!=null && config.getSubkeyBooleanValue(PersistenceProperties.DB_METRICS_JMX, metrics.getTable())){
+			try{
+				metrics.registerMBean();
+			}catch(Exception e){
+				logger.warn("Cannot register metrics for <{}>: {}", metrics.getTable(), e.getMessage());
+			}
+		}
 		return p;
 	}
 
+	/**
+	 * the registry of connection pools shared by several tables
+	 */
+	public static PoolRegistry getPoolRegistry(){
+		return pools;
+	}
+
 	@SuppressWarnings("unchecked")
 	<T> Class<? extends Persist<T>> getPersistClass(Class<T> daoClass, String tableName)throws ClassNotFoundException{
 		if(tableName==null) {
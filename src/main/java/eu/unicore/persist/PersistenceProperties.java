@@ -36,10 +36,42 @@ public class PersistenceProperties extends PropertiesHelper{
 	public static final String DB_PORT="port";
 	public static final String DB_POOL_MAXSIZE="max_connections";
 	public static final String DB_POOL_TIMEOUT="pool_timeout";
+	public static final String DB_POOL_MIN_IDLE="pool_min_idle";
+	public static final String DB_POOL_IDLE_TIMEOUT="pool_idle_timeout";
+	public static final String DB_POOL_MAX_LIFETIME="pool_max_lifetime";
+	public static final String DB_POOL_VALIDATE_AFTER="pool_validate_after";
+	public static final String DB_POOL_SHARED="pool_shared";
+	public static final String DB_POOL_SHARED_MAXSIZE="pool_shared_max_connections";
+	public static final String DB_FETCH_SIZE="fetch_size";
+	public static final String DB_STATEMENT_CACHE_SIZE="statement_cache_size";
+	public static final String DB_MARSHALLER="marshaller";
+	public static final String DB_COMPRESS_ENABLE="compress.enable";
+	public static final String DB_COMPRESS_THRESHOLD="compress.threshold";
 	public static final String DB_CACHE_ENABLE="cache.enable";
 	public static final String DB_CACHE_MAX_SIZE="cache.maxSize";
+	public static final String DB_CACHE_MAX_WEIGHT="cache.maxWeight";
+	public static final String DB_CACHE_EXPIRE_AFTER_ACCESS="cache.expireAfterAccess";
+	public static final String DB_CACHE_EXPIRE_AFTER_WRITE="cache.expireAfterWrite";
+	public static final String DB_CACHE_REFRESH_AFTER_WRITE="cache.refreshAfterWrite";
+	public static final String DB_CACHE_SOFT_VALUES="cache.softValues";
+	public static final String DB_CACHE_WARMUP_SIZE="cache.warmup.size";
+	public static final String DB_CACHE_WARMUP_DIRECTORY="cache.warmup.directory";
+	public static final String DB_NEGATIVE_CACHE_TTL="cache.negativeTTL";
+	public static final String DB_NEGATIVE_CACHE_MAX_SIZE="cache.negativeMaxSize";
+	public static final String DB_BLOOM_FILTER_ENABLE="bloomFilter.enable";
+	public static final String DB_BLOOM_FILTER_EXPECTED_ENTRIES="bloomFilter.expectedEntries";
+	public static final String DB_LOCKS_STRIPES="locks.stripes";
+	public static final String DB_ASYNC_THREADS="async.threads";
+	public static final String DB_ASYNC_MAX_CONCURRENT="async.maxConcurrent";
+	public static final String DB_ASYNC_MAX_PENDING="async.maxPending";
+
+	public static final String DB_METRICS_JMX="metrics.jmx";
+	public static final String DB_SLOWLOG_QUERY_THRESHOLD="slowlog.queryThreshold";
+	public static final String DB_SLOWLOG_LOCK_THRESHOLD="slowlog.lockThreshold";
+	public static final String DB_SLOWLOG_MAX_PER_MINUTE="slowlog.maxPerMinute";
 	public static final String DB_LOCKS_DISTRIBUTED="cluster.enable";
 	public static final String DB_CLUSTER_CONFIG="cluster.config";
+	public static final String DB_CLUSTER_LEASE_TIME="cluster.leaseTime";
 	public static final String DB_DIRECTORY="directory";
 	
 	public static String H2_CACHESIZE="h2.cache_size";
@@ -79,10 +111,79 @@ public class PersistenceProperties extends PropertiesHelper{
 				setDescription("Connection pool maximum size."));
 		META.put(DB_POOL_TIMEOUT, new PropertyMD("3600").setCanHaveSubkeys().setInt().
 				setDescription("Connection pool timeout when trying to get a connection."));
+		META.put(DB_POOL_MIN_IDLE, new PropertyMD("0").setCanHaveSubkeys().setInt().
+				setDescription("Minimum number of idle connections kept open by the connection pool."));
+		META.put(DB_POOL_IDLE_TIMEOUT, new PropertyMD("0").setCanHaveSubkeys().setInt().
+				setDescription("Time in seconds after which idle connections are closed (0: never)."));
+		META.put(DB_POOL_MAX_LIFETIME, new PropertyMD("0").setCanHaveSubkeys().setInt().
+				setDescription("Time in seconds after which connections are closed and replaced once they are no longer in use (0: unlimited)."));
+		META.put(DB_POOL_VALIDATE_AFTER, new PropertyMD("30").setCanHaveSubkeys().setInt().
+				setDescription("Connections that have been idle for longer than this time (in seconds) are validated before use (negative: never validate)."));
+		META.put(DB_POOL_SHARED, new PropertyMD("false").setCanHaveSubkeys().setBoolean().
+				setDescription("Share the connection pool with other tables using the same database and credentials. "
+						+ "The maximum number of connections of a table is then used as its quota in the shared pool."));
+		META.put(DB_POOL_SHARED_MAXSIZE, new PropertyMD("16").setCanHaveSubkeys().setInt().
+				setDescription("Maximum size of a shared connection pool."));
+		META.put(DB_FETCH_SIZE, new PropertyMD("1000").setCanHaveSubkeys().setInt().
+				setDescription("Number of rows fetched from the database at a time when streaming entries."));
+		META.put(DB_STATEMENT_CACHE_SIZE, new PropertyMD("64").setCanHaveSubkeys().setInt().
+				setDescription("Number of prepared statements cached per database connection (0: no caching)."));
+		META.put(DB_MARSHALLER, new PropertyMD("json").setCanHaveSubkeys().
+				setDescription("How entities are stored: 'json', 'binary' (compact, but tied to the Java class layout), "
+						+ "or the class name of a custom ObjectMarshaller. Changing this for existing "
+						+ "tables requires exporting and re-importing the data."));
+		META.put(DB_COMPRESS_ENABLE, new PropertyMD("false").setCanHaveSubkeys().setBoolean().
+				setDescription("Compress the stored data. Existing uncompressed data remains readable."));
+		META.put(DB_COMPRESS_THRESHOLD, new PropertyMD("1024").setCanHaveSubkeys().setInt().
+				setDescription("(Compression) Minimum size of the data in bytes for it to be compressed."));
 		META.put(DB_CACHE_ENABLE, new PropertyMD("true").setCanHaveSubkeys().
 				setDescription("Enable caching."));
 		META.put(DB_CACHE_MAX_SIZE, new PropertyMD("10").setCanHaveSubkeys().setInt().
-				setDescription("Maximum number of elements in the cache (default: 10)."));
+				setDescription("Maximum number of elements in the cache, if no maximum weight is set (default: 10)."));
+		META.put(DB_CACHE_MAX_WEIGHT, new PropertyMD("0").setCanHaveSubkeys().setLong().
+				setDescription("Maximum size of the cache in bytes, measured by the size of the encoded entries. "
+						+ "If larger than zero, this replaces the limit on the number of elements."));
+		META.put(DB_CACHE_EXPIRE_AFTER_ACCESS, new PropertyMD("3600").setCanHaveSubkeys().setLong().
+				setDescription("Time in seconds after which an entry is removed from the cache if it was not accessed (0: never)."));
+		META.put(DB_CACHE_EXPIRE_AFTER_WRITE, new PropertyMD("3600").setCanHaveSubkeys().setLong().
+				setDescription("Time in seconds after which an entry is removed from the cache if it was not written (0: never)."));
+		META.put(DB_CACHE_REFRESH_AFTER_WRITE, new PropertyMD("0").setCanHaveSubkeys().setLong().
+				setDescription("Time in seconds after which a cached entry is re-read from storage in the background "
+						+ "on the next access (0: never)."));
+		META.put(DB_CACHE_SOFT_VALUES, new PropertyMD("false").setCanHaveSubkeys().setBoolean().
+				setDescription("Allow the garbage collector to remove cached entries under memory pressure."));
+		META.put(DB_CACHE_WARMUP_SIZE, new PropertyMD("0").setCanHaveSubkeys().setInt().
+				setDescription("Number of most recently created entities to load into the cache in the background at startup."));
+		META.put(DB_CACHE_WARMUP_DIRECTORY, new PropertyMD().setCanHaveSubkeys().
+				setDescription("Directory where the IDs of the most frequently used cached entities are stored at shutdown, "
+						+ "to be loaded into the cache in the background at the next startup."));
+		META.put(DB_NEGATIVE_CACHE_TTL, new PropertyMD("0").setCanHaveSubkeys().setLong().
+				setDescription("Time in seconds to remember IDs that were not found, so reading them again does "
+						+ "not access the database (0: disabled)."));
+		META.put(DB_NEGATIVE_CACHE_MAX_SIZE, new PropertyMD("10000").setCanHaveSubkeys().setInt().
+				setDescription("Maximum number of IDs to remember as not found."));
+		META.put(DB_BLOOM_FILTER_ENABLE, new PropertyMD("false").setCanHaveSubkeys().setBoolean().
+				setDescription("Keep a Bloom filter of all IDs, so reading non-existing IDs does not access the database. "
+						+ "Must not be used if other processes write to the same table."));
+		META.put(DB_BLOOM_FILTER_EXPECTED_ENTRIES, new PropertyMD("10000").setCanHaveSubkeys().setInt().
+				setDescription("(Bloom filter) Expected number of entities, used for the initial size of the filter."));
+		META.put(DB_LOCKS_STRIPES, new PropertyMD("0").setCanHaveSubkeys().setInt().
+				setDescription("If larger than zero, use this fixed number of locks shared by all entities, "
+						+ "instead of a separate lock per entity."));
+		META.put(DB_ASYNC_THREADS, new PropertyMD("0").setCanHaveSubkeys().setInt().
+				setDescription("(Async) Number of threads for running operations (0: use virtual threads, if available)."));
+		META.put(DB_ASYNC_MAX_CONCURRENT, new PropertyMD("0").setCanHaveSubkeys().setInt().
+				setDescription("(Async) Maximum number of operations running at the same time (0: the maximum number of connections)."));
+		META.put(DB_ASYNC_MAX_PENDING, new PropertyMD("10000").setCanHaveSubkeys().setInt().
+				setDescription("(Async) Maximum number of waiting operations, further operations are rejected."));
+		META.put(DB_METRICS_JMX, new PropertyMD("true").setCanHaveSubkeys().setBoolean().
+				setDescription("Export the operation metrics of the table via JMX."));
+		META.put(DB_SLOWLOG_QUERY_THRESHOLD, new PropertyMD("1000").setCanHaveSubkeys().setLong().
+				setDescription("Log database operations taking longer than this many milliseconds (0: disabled)."));
+		META.put(DB_SLOWLOG_LOCK_THRESHOLD, new PropertyMD("1000").setCanHaveSubkeys().setLong().
+				setDescription("Log waiting for an entity lock longer than this many milliseconds (0: disabled)."));
+		META.put(DB_SLOWLOG_MAX_PER_MINUTE, new PropertyMD("10").setCanHaveSubkeys().setInt().
+				setDescription("Maximum number of slow operation messages logged per minute."));
 		META.put(H2_CACHESIZE, new PropertyMD("1024").setCanHaveSubkeys().setInt().
 				setDescription("(H2) Cache size."));
 		META.put(H2_OPTIONS, new PropertyMD().setCanHaveSubkeys().
@@ -98,9 +199,12 @@ public class PersistenceProperties extends PropertiesHelper{
 		META.put(PGSQL_SSL, new PropertyMD("true").setCanHaveSubkeys().setBoolean().
 				setDescription("(PostgreSQL) Connect using SSL."));
 
+		META.put(DB_LOCKS_DISTRIBUTED, new PropertyMD("false").setCanHaveSubkeys().setBoolean().
+				setDescription("Enable locking across several nodes sharing the same database, using a lease table."));
+		META.put(DB_CLUSTER_LEASE_TIME, new PropertyMD("300").setCanHaveSubkeys().setInt().
+				setDescription("(Cluster mode) Time in seconds after which a lock held by another node can be taken over."));
+
 		// deprecated
-		META.put(DB_LOCKS_DISTRIBUTED, new PropertyMD("false").setCanHaveSubkeys().setDeprecated().
-				setDescription("(deprecated, no effect)"));
 		META.put(DB_CLUSTER_CONFIG, new PropertyMD().setCanHaveSubkeys().setDeprecated().
 				setDescription("(deprecated, no effect)"));
 	}
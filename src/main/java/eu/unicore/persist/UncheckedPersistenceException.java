@@ -0,0 +1,24 @@
+package eu.unicore.persist;
+
+/**
+ * wraps a {@link PersistenceException} where a checked exception cannot be thrown,
+ * e.g. when accessing the database while consuming a stream of entries
+ *
+ * @see Persist#streamAll()
+ *
+ * @author schuller
+ */
+public class UncheckedPersistenceException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public UncheckedPersistenceException(PersistenceException cause) {
+		super(cause);
+	}
+
+	@Override
+	public PersistenceException getCause() {
+		return (PersistenceException)super.getCause();
+	}
+
+}
@@ -7,6 +7,12 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 
+/**
+ * marks a field or accessor method whose value is stored in an 
+ * additional database column, so that entities can be looked up by that value
+ * 
+ * @author schuller
+ */
 @Documented
 @Retention(RetentionPolicy.RUNTIME)
 @Target({ElementType.FIELD, ElementType.METHOD})
@@ -14,4 +20,10 @@ public @interface Column {
 	
    public String name();
 
+   /**
+    * whether to create a database index for the column. Useful if
+    * entities are frequently looked up by the value of this column
+    */
+   public boolean indexed() default false;
+
 }
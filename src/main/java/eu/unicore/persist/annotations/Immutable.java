@@ -0,0 +1,25 @@
+package eu.unicore.persist.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+
+/**
+ * Declares that instances of a Java entity are not modified after they 
+ * have been written or read.<br/>
+ * 
+ * Cached instances are then shared between all readers instead of being copied.
+ * Instances obtained via getForUpdate() are still private copies, which can be
+ * modified and written back.
+ * 
+ * @author schuller
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE})
+public @interface Immutable {
+
+}
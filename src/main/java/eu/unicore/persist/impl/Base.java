@@ -1,16 +1,41 @@
 package eu.unicore.persist.impl;
 
+import java.io.File;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.Lock;
+import java.util.function.BiConsumer;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Policy;
+
+import eu.unicore.persist.CacheStatistics;
 import eu.unicore.persist.ObjectMarshaller;
 import eu.unicore.persist.Persist;
 import eu.unicore.persist.PersistenceException;
 import eu.unicore.persist.PersistenceProperties;
+import eu.unicore.persist.annotations.Immutable;
+import eu.unicore.persist.metrics.Operation;
+import eu.unicore.persist.metrics.PersistMetrics;
 import eu.unicore.util.configuration.ConfigurationException;
 
 /**
@@ -22,28 +47,56 @@ import eu.unicore.util.configuration.ConfigurationException;
  */
 public abstract class Base<T> implements Persist<T>{
 
+	private static final Logger logger = LogManager.getLogger("unicore.persistence.Base");
+
+	// number of IDs read in one go when warming up the cache
+	private static final int WARMUP_BATCH = 500;
+
 	protected final Class<T> daoClass;
 
 	protected final PersistenceDescriptor pd;
 
 	protected PersistenceProperties config = new PersistenceProperties();
 
-	private Cache<String,T> cache;
+	// cached entries in encoded form, or shared instances in case of immutable entities
+	private Cache<String,Object> cache;
+
+	private final boolean immutable;
 
 	private Boolean caching = Boolean.FALSE;
 
 	private LockSupport lockSupport;
 
-	private long cacheHits = 0;
+	// answers reads of non-existing entities, or null if disabled
+	private LookupFilter lookupFilter;
+
+	// reads from storage, used for the cache statistics
+	private final LongAdder loads = new LongAdder();
+
+	private final LongAdder loadTime = new LongAdder();
+
+	private volatile CompletableFuture<Integer> cacheWarmup = CompletableFuture.completedFuture(0);
+
+	// IDs removed while the cache warm-up is running, null otherwise
+	private volatile Set<String> removedDuringWarmup;
+
+	// number of removeAll() calls, so the cache warm-up can detect them
+	private final AtomicLong removeAllCount = new AtomicLong();
 
 	protected ObjectMarshaller<T> marshaller;
 
+	protected final PersistMetrics metrics;
+
+	protected SlowOperationLog slowLog = new SlowOperationLog(null, 0, 0, 0);
+
 	public Base(Class<T>daoClass, String tableName){
 		this.daoClass = daoClass;
 		this.pd = PersistenceDescriptor.get(daoClass);
+		this.immutable = daoClass.isAnnotationPresent(Immutable.class);
 		if(tableName!=null) {
 			pd.setTableName(tableName);
 		}
+		this.metrics = new PersistMetrics(pd.getTableName());
 	}
 
 	@Override
@@ -57,6 +110,7 @@ public abstract class Base<T> implements Persist<T>{
 		try {
 			// check that we can load the driver class
 			Class.forName(getDriverName());
+			initSlowLog();
 			initLockSupport();
 			initCache();
 			createMarshaller();
@@ -65,13 +119,34 @@ public abstract class Base<T> implements Persist<T>{
 		}
 	}
 
+	protected void initSlowLog(){
+		String table = pd.getTableName();
+		long queryThreshold = config.getSubkeyLongValue(PersistenceProperties.DB_SLOWLOG_QUERY_THRESHOLD, table);
+		long lockThreshold = config.getSubkeyLongValue(PersistenceProperties.DB_SLOWLOG_LOCK_THRESHOLD, table);
+		int maxPerMinute = config.getSubkeyIntValue(PersistenceProperties.DB_SLOWLOG_MAX_PER_MINUTE, table);
+		slowLog = new SlowOperationLog(table, queryThreshold, lockThreshold, maxPerMinute);
+	}
+
 	/**
 	 * return the name of the class required for the implementation
 	 */
 	protected abstract String getDriverName();
 
-	protected void createMarshaller(){
-		marshaller = new JSONMarshaller<T>(daoClass);
+	/**
+	 * create the marshaller as configured by {@link PersistenceProperties#DB_MARSHALLER}
+	 */
+	@SuppressWarnings("unchecked")
+	protected void createMarshaller() throws ReflectiveOperationException {
+		String type = config.getSubkeyValue(PersistenceProperties.DB_MARSHALLER, pd.getTableName());
+		if(type==null || "json".equalsIgnoreCase(type)){
+			marshaller = new JSONMarshaller<T>(daoClass);
+		}
+		else if("binary".equalsIgnoreCase(type)){
+			marshaller = new BinaryMarshaller<T>(daoClass);
+		}
+		else{
+			marshaller = (ObjectMarshaller<T>)Class.forName(type).getConstructor(Class.class).newInstance(daoClass);
+		}
 	}
 
 	@Override
@@ -86,27 +161,220 @@ public abstract class Base<T> implements Persist<T>{
 
 	private void initLockSupport() throws ConfigurationException {
 		if(lockSupport!=null)return;
-		lockSupport = new LockSupport(pd.getTableName());
+		int stripes = config.getSubkeyIntValue(PersistenceProperties.DB_LOCKS_STRIPES, pd.getTableName());
+		lockSupport = new LockSupport(pd.getTableName(), stripes);
 	}
 
 	/**
 	 * initialise the cache. If not already set using {@link #setCaching(boolean)}, the
-	 * cache is initialised if the per-table property  {@link PersistenceProperties#DB_CACHE_ENABLE} is set to "true"
+	 * cache is initialised if the per-table property  {@link PersistenceProperties#DB_CACHE_ENABLE} is set to "true".
+	 * The cache is bounded either by the number of entries or, if {@link PersistenceProperties#DB_CACHE_MAX_WEIGHT}
+	 * is set, by the size of the encoded entries. Entries are admitted and evicted based on their
+	 * access frequency and recency (W-TinyLFU).
 	 */
 	protected synchronized void initCache(){
-		boolean cacheEnabled = Boolean.parseBoolean(config.getSubkeyValue(PersistenceProperties.DB_CACHE_ENABLE, pd.getTableName()));
+		String table = pd.getTableName();
+		boolean cacheEnabled = Boolean.parseBoolean(config.getSubkeyValue(PersistenceProperties.DB_CACHE_ENABLE, table));
 		if( Boolean.TRUE.equals(caching) || cacheEnabled ){
 			caching = Boolean.TRUE;
-			int cacheMaxSize = config.getSubkeyIntValue(PersistenceProperties.DB_CACHE_MAX_SIZE,pd.getTableName());
-			cache = CacheBuilder.newBuilder()
-					.maximumSize(cacheMaxSize)
-					.expireAfterAccess(3600, TimeUnit.SECONDS)
-					.expireAfterWrite(3600, TimeUnit.SECONDS)
-					.softValues()
-					.build();
+			Caffeine<Object,Object> builder = Caffeine.newBuilder().recordStats();
+			long maxWeight = config.getSubkeyLongValue(PersistenceProperties.DB_CACHE_MAX_WEIGHT, table);
+			if(maxWeight>0){
+				builder.maximumWeight(maxWeight).weigher((Object id, Object element) -> weigh(element));
+			}
+			else{
+				builder.maximumSize(config.getSubkeyIntValue(PersistenceProperties.DB_CACHE_MAX_SIZE, table));
+			}
+			long expireAfterAccess = config.getSubkeyLongValue(PersistenceProperties.DB_CACHE_EXPIRE_AFTER_ACCESS, table);
+			if(expireAfterAccess>0){
+				builder.expireAfterAccess(Duration.ofSeconds(expireAfterAccess));
+			}
+			long expireAfterWrite = config.getSubkeyLongValue(PersistenceProperties.DB_CACHE_EXPIRE_AFTER_WRITE, table);
+			if(expireAfterWrite>0){
+				builder.expireAfterWrite(Duration.ofSeconds(expireAfterWrite));
+			}
+			if(config.getSubkeyBooleanValue(PersistenceProperties.DB_CACHE_SOFT_VALUES, table)){
+				builder.softValues();
+			}
+			long refreshAfterWrite = config.getSubkeyLongValue(PersistenceProperties.DB_CACHE_REFRESH_AFTER_WRITE, table);
+			if(refreshAfterWrite>0){
+				builder.refreshAfterWrite(Duration.ofSeconds(refreshAfterWrite));
+				cache = builder.build(this::loadForCache);
+			}
+			else{
+				cache = builder.build();
+			}
+		}
+	}
+
+	/**
+	 * the weight of a cache entry is the size of its encoded form in bytes. Immutable
+	 * entities are cached as instances and have to be encoded to find their size
+	 */
+	@SuppressWarnings("unchecked")
+	private int weigh(Object element){
+		return element instanceof byte[] ? ((byte[])element).length : marshaller.serialize((T)element).length;
+	}
+
+	/**
+	 * re-reads an entry from storage when it is refreshed
+	 */
+	private Object loadForCache(String id) throws PersistenceException {
+		T result = load(id);
+		return result!=null ? toCache(result) : null;
+	}
+
+	/**
+	 * initialise the negative cache and the Bloom filter, as configured by {@link PersistenceProperties#DB_NEGATIVE_CACHE_TTL}
+	 * and {@link PersistenceProperties#DB_BLOOM_FILTER_ENABLE}. Must be called once the storage is ready to be read.
+	 *
+	 * @param bloomFilterAllowed - false if the Bloom filter cannot be used, e.g. since other nodes write to the same table
+	 */
+	protected void initLookupFilter(boolean bloomFilterAllowed) throws PersistenceException {
+		String table = pd.getTableName();
+		long negativeTTL = config.getSubkeyLongValue(PersistenceProperties.DB_NEGATIVE_CACHE_TTL, table);
+		int negativeMaxSize = config.getSubkeyIntValue(PersistenceProperties.DB_NEGATIVE_CACHE_MAX_SIZE, table);
+		boolean bloomFilter = config.getSubkeyBooleanValue(PersistenceProperties.DB_BLOOM_FILTER_ENABLE, table);
+		if(bloomFilter && !bloomFilterAllowed){
+			throw new PersistenceException("Bloom filter cannot be enabled for table <"+table+">");
+		}
+		int expectedEntries = config.getSubkeyIntValue(PersistenceProperties.DB_BLOOM_FILTER_EXPECTED_ENTRIES, table);
+		LookupFilter filter = new LookupFilter(table, negativeTTL, negativeMaxSize,
+				bloomFilter ? this::getIDs : null, expectedEntries);
+		if(filter.isEnabled()){
+			try{
+				filter.init();
+			}catch(Exception e){
+				throw new PersistenceException("Error setting up Bloom filter for table <"+table+">", e);
+			}
+			lookupFilter = filter;
+		}
+	}
+
+	/**
+	 * re-build the Bloom filter from the stored IDs (if enabled)
+	 */
+	public void rebuildBloomFilter() throws PersistenceException {
+		if(lookupFilter==null)return;
+		try{
+			lookupFilter.rebuild();
+		}catch(Exception e){
+			throw new PersistenceException("Error re-building Bloom filter for table <"+pd.getTableName()+">", e);
 		}
 	}
 
+	/**
+	 * start loading entities into the cache in the background, as configured by {@link PersistenceProperties#DB_CACHE_WARMUP_DIRECTORY}
+	 * (the entities that were used most frequently before the last shutdown) and {@link PersistenceProperties#DB_CACHE_WARMUP_SIZE}
+	 * (the most recently created entities). Must be called once the storage is ready to be read.
+	 */
+	protected void startCacheWarmup(){
+		String table = pd.getTableName();
+		int limit = config.getSubkeyIntValue(PersistenceProperties.DB_CACHE_WARMUP_SIZE, table);
+		File hotIDs = getHotIDsFile();
+		if(!caching || (limit<=0 && (hotIDs==null || !hotIDs.exists())))return;
+		Set<String> removed = ConcurrentHashMap.newKeySet();
+		removedDuringWarmup = removed;
+		cacheWarmup = CompletableFuture.supplyAsync(() -> {
+			try{
+				return warmUpCache(hotIDs, limit, removed);
+			}catch(Exception e){
+				logger.warn("Error warming up cache for <{}>", table, e);
+				return -1;
+			}finally{
+				removedDuringWarmup = null;
+			}
+		}, r -> {
+			Thread t = new Thread(r, "unicore-persistence-warmup-"+table);
+			t.setDaemon(true);
+			t.start();
+		});
+	}
+
+	/**
+	 * the result of the cache warm-up, i.e. the number of entities loaded into the cache
+	 */
+	protected CompletableFuture<Integer> getCacheWarmup(){
+		return cacheWarmup;
+	}
+
+	/**
+	 * @param removed - receives the IDs of entities removed while the warm-up is running
+	 */
+	private int warmUpCache(File hotIDs, int limit, Set<String> removed) throws Exception {
+		String table = pd.getTableName();
+		long start = System.currentTimeMillis();
+		long removeAlls = removeAllCount.get();
+		int[] count = new int[1];
+		BiConsumer<String,T> addToCache = (id, dao) -> {
+			if(removed.contains(id) || removeAllCount.get()!=removeAlls)return;
+			Object element = toCache(dao);
+			// do not replace entries that were written or read in the meantime
+			if(cache.asMap().putIfAbsent(id, element)==null
+					&& (removed.contains(id) || removeAllCount.get()!=removeAlls)){
+				// removed concurrently, after the check above
+				cache.asMap().remove(id, element);
+				return;
+			}
+			if(++count[0] % 10000 == 0){
+				logger.info("Cache warm-up for <{}>: {} entities loaded.", table, count[0]);
+			}
+		};
+		if(hotIDs!=null && hotIDs.exists()){
+			List<String> ids = Files.readAllLines(hotIDs.toPath());
+			for(int i=0; i<ids.size(); i+=WARMUP_BATCH){
+				_readAll(ids.subList(i, Math.min(ids.size(), i+WARMUP_BATCH))).forEach(addToCache);
+			}
+		}
+		if(limit>0){
+			_readNewest(limit, addToCache);
+		}
+		logger.info("Cache warm-up for <{}> finished: {} entities loaded in {} ms.",
+				table, count[0], System.currentTimeMillis()-start);
+		return count[0];
+	}
+
+	/**
+	 * read the most recently created entities - by default, the IDs are
+	 * read first, and the entities using {@link #_readAll(List)}
+	 *
+	 * @param limit - the maximum number of entities to read
+	 * @param action - invoked with ID and entity
+	 * @return the number of entities read
+	 */
+	protected int _readNewest(int limit, BiConsumer<String,T> action) throws PersistenceException {
+		try{
+			Map<String,T> result = _readAll(getIDPage(limit, null, false).getIDs());
+			result.forEach(action);
+			return result.size();
+		}catch(SQLException e){
+			throw new PersistenceException(e);
+		}
+	}
+
+	/**
+	 * store the IDs of the most frequently used cached entities, if {@link PersistenceProperties#DB_CACHE_WARMUP_DIRECTORY}
+	 * is set, so they can be loaded into the cache at the next startup
+	 */
+	protected void saveHotIDs(){
+		File hotIDs = getHotIDsFile();
+		if(!caching || cache==null || hotIDs==null)return;
+		try{
+			Policy.Eviction<String,Object> eviction = cache.policy().eviction().orElse(null);
+			int size = (int)Math.min(Integer.MAX_VALUE, cache.estimatedSize());
+			Collection<String> ids = eviction!=null ? eviction.hottest(size).keySet() : cache.asMap().keySet();
+			hotIDs.getParentFile().mkdirs();
+			Files.write(hotIDs.toPath(), ids);
+		}catch(Exception e){
+			logger.warn("Could not store IDs of cached entities for <{}>", pd.getTableName(), e);
+		}
+	}
+
+	private File getHotIDsFile(){
+		String dir = config.getSubkeyValue(PersistenceProperties.DB_CACHE_WARMUP_DIRECTORY, pd.getTableName());
+		return dir!=null ? new File(dir, pd.getTableName()+".ids") : null;
+	}
+
 	@Override
 	public T getForUpdate(String id)throws PersistenceException, InterruptedException{
 		try{
@@ -119,7 +387,9 @@ public abstract class Base<T> implements Persist<T>{
 	@Override
 	public void lock(String id, long timeout, TimeUnit unit)throws TimeoutException, InterruptedException {
 		Lock lock = lockSupport.getOrCreateLock(id);
-		if(!lock.tryLock(timeout, unit)){
+		boolean acquired = acquire(lock, id, timeout, unit);
+		slowLog.clear();
+		if(!acquired){
 			throw new TimeoutException("Time out reached: lock for "+
 					pd.getTableName()+":"+id+" could not be acquired");
 		}
@@ -129,10 +399,11 @@ public abstract class Base<T> implements Persist<T>{
 	public T getForUpdate(String id, long timeout, TimeUnit unit)throws PersistenceException, TimeoutException, InterruptedException{
 		Lock lock = lockSupport.getOrCreateLock(id);
 		T result = null;
-		if(lock.tryLock(timeout, unit)){
+		if(acquire(lock, id, timeout, unit)){
 			try{
-				result = read(id);
+				result = readForUpdate(id);
 			}finally{
+				slowLog.clear();
 				if(result==null){
 					lock.unlock();
 				}
@@ -145,13 +416,23 @@ public abstract class Base<T> implements Persist<T>{
 		}
 	}
 
+	private boolean acquire(Lock lock, String id, long timeout, TimeUnit unit) throws InterruptedException {
+		long start = System.nanoTime();
+		try{
+			return lock.tryLock(timeout, unit);
+		}finally{
+			metrics.record(Operation.LOCK_WAIT, start);
+			slowLog.lockWaited(id, System.nanoTime()-start);
+		}
+	}
+
 	@Override
 	public T tryGetForUpdate(String id)throws PersistenceException {
 		Lock lock = lockSupport.getOrCreateLock(id);
 		T result = null;
 		if(lock.tryLock()){
 			try{
-				result = read(id);
+				result = readForUpdate(id);
 			}
 			finally{
 				if(result==null){
@@ -171,56 +452,256 @@ public abstract class Base<T> implements Persist<T>{
 	 */
 	@Override
 	public T read(String id)throws PersistenceException {
+		long start = System.nanoTime();
+		try{
+			return readCached(id);
+		}finally{
+			metrics.record(Operation.READ, start);
+		}
+	}
+
+	private T readCached(String id)throws PersistenceException {
 		T result = null;
 		if(caching){
-			T element = cache.getIfPresent(id);
+			Object element = cache.getIfPresent(id);
 			if(element!=null){
-				cacheHits++;
-				return copy(element);
+				return fromCache(element);
 			}
 		}
-		result = _read(id);
+		if(lookupFilter!=null && lookupFilter.isMissing(id)){
+			return null;
+		}
+		long generation = lookupFilter!=null ? lookupFilter.generation() : 0;
+		result = load(id);
+		if(result==null && lookupFilter!=null){
+			lookupFilter.notFound(id, generation);
+		}
 		if(caching && result!=null){
 			try{
-				cache.put(id,copy(result));
+				cache.put(id, toCache(result));
 			}catch(Exception cn){}
 		}
 		return result;
 	}
 
+	private T load(String id) throws PersistenceException {
+		long start = System.nanoTime();
+		try{
+			return _read(id);
+		}finally{
+			loads.increment();
+			loadTime.add(System.nanoTime()-start);
+		}
+	}
+
+	/**
+	 * read an instance that the caller may modify, i.e. a private copy in case 
+	 * of an immutable entity. If a distributed lock is held, the instance is read
+	 * from storage, since other nodes may have modified it
+	 */
+	private T readForUpdate(String id)throws PersistenceException {
+		T result = lockSupport.getDistributedLockProvider()!=null ? readUncached(id) : read(id);
+		return immutable && result!=null ? copy(result) : result;
+	}
+
+	/**
+	 * read an instance from storage bypassing the cache and the lookup filter,
+	 * and update the cache with the result
+	 */
+	private T readUncached(String id)throws PersistenceException {
+		long start = System.nanoTime();
+		try{
+			T result = load(id);
+			if(caching){
+				if(result!=null){
+					try{
+						cache.put(id, toCache(result));
+					}catch(Exception cn){}
+				}
+				else{
+					cache.invalidate(id);
+				}
+			}
+			return result;
+		}finally{
+			metrics.record(Operation.READ, start);
+		}
+	}
+
+	private Object toCache(T obj) {
+		return immutable ? obj : marshaller.serialize(obj);
+	}
+
+	@SuppressWarnings("unchecked")
+	private T fromCache(Object element) {
+		return immutable ? (T)element : marshaller.deserialize((byte[])element);
+	}
+
 	/**
 	 * read an instance from storage
 	 */
 	protected abstract T _read(String id) throws PersistenceException;
 
+	@Override
+	public Map<String,T> readAll(Collection<String> ids)throws PersistenceException {
+		long start = System.nanoTime();
+		try{
+			return readAllCached(ids);
+		}finally{
+			metrics.record(Operation.READ, start);
+		}
+	}
+
+	private Map<String,T> readAllCached(Collection<String> ids)throws PersistenceException {
+		Map<String,T> result = new HashMap<>();
+		List<String> missing = new ArrayList<>();
+		for(String id: new LinkedHashSet<>(ids)){
+			Object element = caching ? cache.getIfPresent(id) : null;
+			if(element!=null){
+				result.put(id, fromCache(element));
+			}
+			else if(lookupFilter==null || !lookupFilter.isMissing(id)){
+				missing.add(id);
+			}
+		}
+		if(missing.size()>0){
+			long start = System.nanoTime();
+			long generation = lookupFilter!=null ? lookupFilter.generation() : 0;
+			Map<String,T> loaded = _readAll(missing);
+			loads.add(missing.size());
+			loadTime.add(System.nanoTime()-start);
+			if(lookupFilter!=null){
+				for(String id: missing){
+					if(!loaded.containsKey(id))lookupFilter.notFound(id, generation);
+				}
+			}
+			if(caching){
+				try{
+					Map<String,Object> encoded = new HashMap<>();
+					for(Map.Entry<String,T> e: loaded.entrySet()){
+						encoded.put(e.getKey(), toCache(e.getValue()));
+					}
+					cache.putAll(encoded);
+				}catch(Exception cn){}
+			}
+			result.putAll(loaded);
+		}
+		return result;
+	}
+
+	/**
+	 * read several instances from storage - by default, each
+	 * instance is read separately using {@link #_read(String)}
+	 *
+	 * @param ids - the IDs of the instances to read
+	 * @return a map of the existing instances keyed with their ID
+	 */
+	protected Map<String,T> _readAll(List<String> ids) throws PersistenceException {
+		Map<String,T> result = new HashMap<>();
+		for(String id: ids){
+			T dao = _read(id);
+			if(dao!=null)result.put(id, dao);
+		}
+		return result;
+	}
+
 	@Override
 	public void write(T dao)throws PersistenceException, IllegalStateException {
+		long start = System.nanoTime();
 		String id = pd.getID(dao);
 		Lock lock = lockSupport.getLockIfExists(id);
 		if(lock!=null && !lock.tryLock())throw new IllegalStateException("No write permission has been acquired!");
 		try{
+			if(lock!=null)lockSupport.checkDistributedLock(id);
+			if(lookupFilter!=null)lookupFilter.added(id);
 			_write(dao, id);
+			if(lookupFilter!=null)lookupFilter.added(id);
 			if(caching){
 				try{
-					cache.put(pd.getID(dao),copy(dao));
+					cache.put(id, toCache(dao));
 				}catch(Exception cn){}
 			}
 		}finally{
 			if(lock!=null){
-				lock.unlock();
-				try{
-					// if we got it with getForUpdate(), we want to clear the lock
-					lock.unlock();
-				}catch(Exception me){}
+				releaseWriteLock(lock);
 			}
+			metrics.record(Operation.WRITE, start);
 		}
 	}
 
+	private void releaseWriteLock(Lock lock){
+		lock.unlock();
+		try{
+			// if we got it with getForUpdate(), we want to clear the lock
+			lock.unlock();
+		}catch(Exception me){}
+	}
+
 	/**
 	 * write an instance to storage
 	 */
 	protected abstract void _write(T dao, String id)throws PersistenceException;
 
+	@Override
+	public void writeAll(Collection<T> daos)throws PersistenceException, IllegalStateException {
+		long start = System.nanoTime();
+		List<T> entries = new ArrayList<>(daos);
+		List<String> ids = new ArrayList<>();
+		// locks taken by this method, one per ID
+		Map<String,Lock> locks = new LinkedHashMap<>();
+		boolean written = false;
+		try{
+			for(T dao: entries){
+				String id = pd.getID(dao);
+				ids.add(id);
+				if(locks.containsKey(id))continue;
+				Lock lock = lockSupport.getLockIfExists(id);
+				if(lock!=null){
+					if(!lock.tryLock())throw new IllegalStateException("No write permission has been acquired for <"+id+">!");
+					locks.put(id, lock);
+					lockSupport.checkDistributedLock(id);
+				}
+			}
+			if(lookupFilter!=null)ids.forEach(lookupFilter::added);
+			_writeAll(entries, ids);
+			written = true;
+			if(lookupFilter!=null)ids.forEach(lookupFilter::added);
+			if(caching){
+				try{
+					Map<String,Object> encoded = new HashMap<>();
+					for(int i=0; i<entries.size(); i++){
+						encoded.put(ids.get(i), toCache(entries.get(i)));
+					}
+					cache.putAll(encoded);
+				}catch(Exception cn){}
+			}
+		}finally{
+			// locks held via getForUpdate() are only cleared if the entries were written
+			for(Lock lock: locks.values()){
+				if(written){
+					releaseWriteLock(lock);
+				}
+				else{
+					lock.unlock();
+				}
+			}
+			metrics.record(Operation.WRITE, start);
+		}
+	}
+
+	/**
+	 * write several instances to storage - by default, each
+	 * instance is written separately using {@link #_write(Object, String)}
+	 *
+	 * @param daos - the instances to write
+	 * @param ids - the IDs of the instances, in the same order
+	 */
+	protected void _writeAll(List<T> daos, List<String> ids)throws PersistenceException {
+		for(int i=0; i<daos.size(); i++){
+			_write(daos.get(i), ids.get(i));
+		}
+	}
+
 	@Override
 	public void unlock(T dao)throws PersistenceException{
 		String id = pd.getID(dao);
@@ -239,23 +720,43 @@ public abstract class Base<T> implements Persist<T>{
 
 	@Override
 	public void delete(String id)throws PersistenceException {
+		long start = System.nanoTime();
 		if(caching){
+			// must be recorded before invalidating, see warmUpCache()
+			Set<String> removed = removedDuringWarmup;
+			if(removed!=null)removed.add(id);
 			cache.invalidate(id);
 		}
-		_remove(id);
+		long generation = lookupFilter!=null ? lookupFilter.generation() : 0;
+		try{
+			_remove(id);
+		}finally{
+			metrics.record(Operation.DELETE, start);
+		}
+		if(lookupFilter!=null){
+			lookupFilter.removed(id, generation);
+		}
 	}
 
 	protected abstract void _remove(String id) throws PersistenceException;
 
 	@Override
 	public void removeAll()throws PersistenceException{
+		long start = System.nanoTime();
 		if(caching){
+			removeAllCount.incrementAndGet();
 			cache.invalidateAll();
 		}
 		try{
-			_removeAll();
+			if(lookupFilter!=null){
+				lookupFilter.clear(this::_removeAll);
+			}
+			else{
+				_removeAll();
+			}
 		}finally{
 			lockSupport.cleanup();
+			metrics.record(Operation.DELETE, start);
 		}
 	}
 
@@ -273,8 +774,50 @@ public abstract class Base<T> implements Persist<T>{
 		this.caching = caching;
 	}
 
+	@Override
+	public PersistMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * remove the metrics MBean (if registered), to be called on shutdown
+	 */
+	protected void unregisterMetrics() {
+		try{
+			metrics.unregisterMBean();
+		}catch(Exception e){
+			logger.warn("Cannot unregister metrics for <{}>: {}", pd.getTableName(), e.getMessage());
+		}
+	}
+
 	public long getCacheHits() {
-		return cacheHits;
+		return caching ? cache.stats().hitCount() : 0;
+	}
+
+	@Override
+	public CacheStatistics getCacheStatistics() {
+		if(!caching || cache==null){
+			return new CacheStatistics(0, 0, loads.sum(), loadTime.sum(), 0, 0, 0);
+		}
+		var stats = cache.stats();
+		return new CacheStatistics(stats.hitCount(), stats.missCount(), loads.sum(), loadTime.sum(),
+				stats.evictionCount(), cache.estimatedSize(), getCachedBytes());
+	}
+
+	/**
+	 * the size of the cached entries in bytes, which is only tracked (by the cache itself)
+	 * if the cache is bounded by weight. Pending cache maintenance is run first, since the
+	 * weighted size is only updated by it.
+	 *
+	 * @return size in bytes, or -1 if not known
+	 */
+	private long getCachedBytes() {
+		Policy.Eviction<String,Object> eviction = cache.policy().eviction().orElse(null);
+		if(eviction!=null && eviction.isWeighted()){
+			cache.cleanUp();
+			return eviction.weightedSize().orElse(-1);
+		}
+		return -1;
 	}
 
 }
\ No newline at end of file
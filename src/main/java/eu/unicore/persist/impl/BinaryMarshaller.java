@@ -0,0 +1,388 @@
+package eu.unicore.persist.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import com.google.gson.ExclusionStrategy;
+import com.google.gson.FieldAttributes;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import eu.unicore.persist.DataVersionException;
+import eu.unicore.persist.ObjectMarshaller;
+import eu.unicore.persist.util.GSONUtil;
+
+/**
+ * Compact binary marshaller.<br/>
+ *
+ * The schema is derived from the fields of the DAO class. Fields of primitive, wrapper,
+ * String, enum and byte[] types are written in declaration order without any names,
+ * using variable-length integers and length-prefixed strings.
+ * All other fields (collections, nested objects, ...) are written as a single JSON
+ * document using the same Gson configuration as the {@link JSONMarshaller}.<br/>
+ *
+ * The data starts with a fingerprint of the schema. Since the data does not contain
+ * field names, data written using a different version of the DAO class cannot be read,
+ * and an {@link IllegalStateException} caused by a {@link DataVersionException} is thrown.
+ *
+ * @author schuller
+ */
+public class BinaryMarshaller<T> implements ObjectMarshaller<T> {
+
+	private static final byte FORMAT = (byte)0xB1;
+
+	private final Class<T> classOfT;
+
+	// fields written in binary form, in a fixed order
+	private final Field[] fields;
+
+	// has fields that are written as JSON
+	private final boolean hasComplexFields;
+
+	private final Gson gson;
+
+	private final Constructor<T> constructor;
+
+	private final int fingerprint;
+
+	public BinaryMarshaller(Class<T>classOfT){
+		this.classOfT = classOfT;
+		List<Field> simple = new ArrayList<>();
+		boolean complex = false;
+		for(Class<?> c = classOfT; c!=null && c!=Object.class; c = c.getSuperclass()){
+			Field[] declared = c.getDeclaredFields();
+			Arrays.sort(declared, Comparator.comparing(Field::getName));
+			List<Field> own = new ArrayList<>();
+			for(Field f: declared){
+				int mod = f.getModifiers();
+				if(Modifier.isStatic(mod) || Modifier.isTransient(mod) || f.isSynthetic())continue;
+				if(isSimple(f.getType())){
+					f.setAccessible(true);
+					own.add(f);
+				}
+				else{
+					complex = true;
+				}
+			}
+			simple.addAll(0, own);
+		}
+		this.fields = simple.toArray(new Field[simple.size()]);
+		this.hasComplexFields = complex;
+		this.gson = build();
+		this.constructor = findConstructor();
+		this.fingerprint = computeFingerprint();
+	}
+
+	private Gson build(){
+		final Set<String> binaryFields = new HashSet<>();
+		for(Field f: fields){
+			binaryFields.add(f.getDeclaringClass().getName()+"#"+f.getName());
+		}
+		GsonBuilder builder = new GsonBuilder();
+		GSONUtil.registerTypeConverters(classOfT, builder);
+		builder.setExclusionStrategies(new ExclusionStrategy() {
+			@Override
+			public boolean shouldSkipField(FieldAttributes f) {
+				return binaryFields.contains(f.getDeclaringClass().getName()+"#"+f.getName());
+			}
+			@Override
+			public boolean shouldSkipClass(Class<?> clazz) {
+				return false;
+			}
+		});
+		return builder.create();
+	}
+
+	private Constructor<T> findConstructor(){
+		try{
+			Constructor<T> c = classOfT.getDeclaredConstructor();
+			c.setAccessible(true);
+			return c;
+		}catch(Exception e){
+			// will let Gson create instances
+			return null;
+		}
+	}
+
+	private int computeFingerprint(){
+		CRC32 crc = new CRC32();
+		for(Field f: fields){
+			crc.update((f.getName()+":"+f.getType().getName()+";").getBytes(StandardCharsets.UTF_8));
+		}
+		return (int)crc.getValue();
+	}
+
+	static boolean isSimple(Class<?> type){
+		return type.isPrimitive() || type.isEnum() || type==String.class || type==byte[].class
+				|| type==Boolean.class || type==Byte.class || type==Short.class || type==Character.class
+				|| type==Integer.class || type==Long.class || type==Float.class || type==Double.class;
+	}
+
+	@Override
+	public boolean isBinary() {
+		return true;
+	}
+
+	@Override
+	public byte[] serialize(T object) {
+		Output out = new Output();
+		out.write(FORMAT);
+		out.writeFixedInt(fingerprint);
+		try{
+			for(Field f: fields){
+				writeField(out, f.getType(), f.get(object));
+			}
+		}catch(IllegalAccessException e){
+			throw new IllegalStateException(e);
+		}
+		if(hasComplexFields){
+			writeString(out, gson.toJson(object, classOfT));
+		}
+		return out.toByteArray();
+	}
+
+	@Override
+	public T deserialize(byte[] data) {
+		ByteBuffer in = ByteBuffer.wrap(data);
+		byte format = in.get();
+		int found = in.getInt();
+		if(format!=FORMAT || found!=fingerprint){
+			throw new IllegalStateException(new DataVersionException(fingerprint, found));
+		}
+		try{
+			Object[] values = new Object[fields.length];
+			for(int i=0; i<fields.length; i++){
+				values[i] = readField(in, fields[i].getType());
+			}
+			T result = hasComplexFields ? gson.fromJson(readString(in), classOfT) : newInstance();
+			for(int i=0; i<fields.length; i++){
+				fields[i].set(result, values[i]);
+			}
+			return result;
+		}catch(ReflectiveOperationException e){
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private T newInstance() throws ReflectiveOperationException {
+		return constructor!=null ? constructor.newInstance() : gson.fromJson("{}", classOfT);
+	}
+
+	@Override
+	public T deserialize(InputStream is) {
+		try{
+			return deserialize(is.readAllBytes());
+		}catch(IOException e){
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public String encode(T input) {
+		return Base64.getEncoder().encodeToString(serialize(input));
+	}
+
+	@Override
+	public T decode(String input) {
+		return deserialize(Base64.getDecoder().decode(input));
+	}
+
+	private void writeField(Output out, Class<?> type, Object value){
+		if(type.isPrimitive()){
+			writePrimitive(out, type, value);
+		}
+		else if(type==String.class){
+			writeString(out, (String)value);
+		}
+		else if(type.isEnum()){
+			writeString(out, value!=null ? ((Enum<?>)value).name() : null);
+		}
+		else if(type==byte[].class){
+			writeBytes(out, (byte[])value);
+		}
+		else {
+			// primitive wrapper
+			out.write(value!=null ? 1 : 0);
+			if(value!=null)writePrimitive(out, type, value);
+		}
+	}
+
+	private void writePrimitive(Output out, Class<?> type, Object value){
+		if(type==int.class || type==Integer.class){
+			out.writeVarLong((Integer)value);
+		}
+		else if(type==long.class || type==Long.class){
+			out.writeVarLong((Long)value);
+		}
+		else if(type==boolean.class || type==Boolean.class){
+			out.write((Boolean)value ? 1 : 0);
+		}
+		else if(type==double.class || type==Double.class){
+			out.writeFixedLong(Double.doubleToRawLongBits((Double)value));
+		}
+		else if(type==float.class || type==Float.class){
+			out.writeFixedInt(Float.floatToRawIntBits((Float)value));
+		}
+		else if(type==short.class || type==Short.class){
+			out.writeVarLong((Short)value);
+		}
+		else if(type==byte.class || type==Byte.class){
+			out.write((Byte)value);
+		}
+		else if(type==char.class || type==Character.class){
+			out.writeVarLong((Character)value);
+		}
+	}
+
+	private Object readField(ByteBuffer in, Class<?> type){
+		if(type.isPrimitive()){
+			return readPrimitive(in, type);
+		}
+		else if(type==String.class){
+			return readString(in);
+		}
+		else if(type.isEnum()){
+			String name = readString(in);
+			return name!=null ? enumValue(type, name) : null;
+		}
+		else if(type==byte[].class){
+			return readBytes(in);
+		}
+		else {
+			return in.get()!=0 ? readPrimitive(in, type) : null;
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private Object enumValue(Class<?> type, String name){
+		try{
+			return Enum.valueOf((Class<Enum>)type, name);
+		}catch(IllegalArgumentException e){
+			// unknown constant, same as Gson
+			return null;
+		}
+	}
+
+	private Object readPrimitive(ByteBuffer in, Class<?> type){
+		if(type==int.class || type==Integer.class){
+			return (int)readVarLong(in);
+		}
+		else if(type==long.class || type==Long.class){
+			return readVarLong(in);
+		}
+		else if(type==boolean.class || type==Boolean.class){
+			return in.get()!=0;
+		}
+		else if(type==double.class || type==Double.class){
+			return Double.longBitsToDouble(in.getLong());
+		}
+		else if(type==float.class || type==Float.class){
+			return Float.intBitsToFloat(in.getInt());
+		}
+		else if(type==short.class || type==Short.class){
+			return (short)readVarLong(in);
+		}
+		else if(type==byte.class || type==Byte.class){
+			return in.get();
+		}
+		else {
+			return (char)readVarLong(in);
+		}
+	}
+
+	// strings and byte arrays are prefixed with length+1, zero denotes null
+
+	private void writeString(Output out, String value){
+		writeBytes(out, value!=null ? value.getBytes(StandardCharsets.UTF_8) : null);
+	}
+
+	private void writeBytes(Output out, byte[] value){
+		if(value==null){
+			out.writeVarLong(0);
+		}
+		else{
+			out.writeVarLong(value.length+1);
+			out.write(value, 0, value.length);
+		}
+	}
+
+	private String readString(ByteBuffer in){
+		int len = (int)readVarLong(in)-1;
+		if(len<0)return null;
+		String result = new String(in.array(), in.arrayOffset()+in.position(), len, StandardCharsets.UTF_8);
+		in.position(in.position()+len);
+		return result;
+	}
+
+	private byte[] readBytes(ByteBuffer in){
+		int len = (int)readVarLong(in)-1;
+		if(len<0)return null;
+		byte[] result = new byte[len];
+		in.get(result);
+		return result;
+	}
+
+	/**
+	 * reads a zig-zag encoded variable length integer
+	 */
+	static long readVarLong(ByteBuffer in){
+		long value = 0;
+		int shift = 0;
+		byte b;
+		do{
+			b = in.get();
+			value |= (long)(b & 0x7F) << shift;
+			shift += 7;
+		}while((b & 0x80)!=0);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * output buffer with helpers for the encodings used
+	 */
+	static class Output extends ByteArrayOutputStream {
+
+		Output(){
+			super(256);
+		}
+
+		/**
+		 * writes a zig-zag encoded variable length integer
+		 */
+		void writeVarLong(long value){
+			long v = (value << 1) ^ (value >> 63);
+			while((v & ~0x7FL)!=0){
+				write((int)((v & 0x7F) | 0x80));
+				v >>>= 7;
+			}
+			write((int)v);
+		}
+
+		void writeFixedInt(int value){
+			write(value >>> 24);
+			write(value >>> 16);
+			write(value >>> 8);
+			write(value);
+		}
+
+		void writeFixedLong(long value){
+			writeFixedInt((int)(value >>> 32));
+			writeFixedInt((int)value);
+		}
+	}
+
+}
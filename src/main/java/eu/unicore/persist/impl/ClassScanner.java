@@ -69,8 +69,8 @@ public class ClassScanner {
 		List<ColumnDescriptor>result = new ArrayList<>();
 		for(Method m: daoClass.getDeclaredMethods()){
 			if(m.getAnnotation(Column.class)!=null){
-				String name = ((Column)m.getAnnotation(Column.class)).name();
-				result.add(new ColumnDescriptor(m,name));
+				Column column = m.getAnnotation(Column.class);
+				result.add(new ColumnDescriptor(m, column.name(), column.indexed()));
 			}
 		}
 		for(Field f: daoClass.getDeclaredFields()){
@@ -79,11 +79,12 @@ public class ClassScanner {
 				if(m==null) {
 					throw new IllegalArgumentException("Can't find getter method for column "+f.getName());
 				}
-				String columnName = ((Column)f.getAnnotation(Column.class)).name();
+				Column column = f.getAnnotation(Column.class);
+				String columnName = column.name();
 				if(columnName==null) {
 					columnName = f.getName();
 				}
-				result.add(new ColumnDescriptor(m,columnName));
+				result.add(new ColumnDescriptor(m, columnName, column.indexed()));
 			}
 		}
 		return result;
@@ -15,9 +15,16 @@ public class ColumnDescriptor {
 
 	private final String column;
 
+	private final boolean indexed;
+
 	public ColumnDescriptor(Method method, String column){
+		this(method, column, false);
+	}
+
+	public ColumnDescriptor(Method method, String column, boolean indexed){
 		this.method = method;
 		this.column = column;
+		this.indexed = indexed;
 	}
 
 	public Method getMethod() {
@@ -28,4 +35,8 @@ public class ColumnDescriptor {
 		return column;
 	}
 
+	public boolean isIndexed() {
+		return indexed;
+	}
+
 }
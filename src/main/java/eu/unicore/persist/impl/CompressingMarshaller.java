@@ -0,0 +1,147 @@
+package eu.unicore.persist.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import eu.unicore.persist.ObjectMarshaller;
+
+/**
+ * Compresses the data produced by another marshaller using Deflate, if it is larger
+ * than a threshold.<br/>
+ *
+ * Compressed data is marked by a header, so compressed and uncompressed data can
+ * coexist in the same table, and compression can be switched on or off for existing tables.
+ * Binary data starts with a zero byte followed by the uncompressed length,
+ * while strings start with '~' followed by the Base64 encoded binary form.
+ *
+ * @author schuller
+ */
+public class CompressingMarshaller<T> implements ObjectMarshaller<T> {
+
+	private static final byte HEADER = 0;
+
+	private static final String STRING_HEADER = "~";
+
+	// maximum compression ratio that Deflate can achieve
+	private static final int MAX_RATIO = 1032;
+
+	private final ObjectMarshaller<T> delegate;
+
+	private final int threshold;
+
+	/**
+	 * @param delegate - the actual marshaller
+	 * @param threshold - data smaller than this (in bytes) is not compressed
+	 */
+	public CompressingMarshaller(ObjectMarshaller<T> delegate, int threshold){
+		this.delegate = delegate;
+		this.threshold = threshold;
+	}
+
+	public ObjectMarshaller<T> getDelegate(){
+		return delegate;
+	}
+
+	@Override
+	public boolean isBinary() {
+		return delegate.isBinary();
+	}
+
+	@Override
+	public byte[] serialize(T object) {
+		byte[] data = delegate.serialize(object);
+		return data.length>=threshold ? compress(data) : data;
+	}
+
+	@Override
+	public T deserialize(byte[] data) {
+		return delegate.deserialize(data.length>0 && data[0]==HEADER ? decompress(data) : data);
+	}
+
+	@Override
+	public T deserialize(InputStream is) {
+		try{
+			return deserialize(is.readAllBytes());
+		}catch(IOException e){
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public String encode(T input) {
+		String data = delegate.encode(input);
+		// the threshold is in bytes, and a character takes at most 3 bytes in UTF-8
+		if(data.length()<threshold/3)return data;
+		byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+		if(bytes.length<threshold)return data;
+		return STRING_HEADER+Base64.getEncoder().encodeToString(compress(bytes));
+	}
+
+	@Override
+	public T decode(String input) {
+		if(input.startsWith(STRING_HEADER)){
+			byte[] data = decompress(Base64.getDecoder().decode(input.substring(STRING_HEADER.length())));
+			input = new String(data, StandardCharsets.UTF_8);
+		}
+		return delegate.decode(input);
+	}
+
+	static byte[] compress(byte[] data){
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+		try{
+			deflater.setInput(data);
+			deflater.finish();
+			ByteArrayOutputStream out = new ByteArrayOutputStream(data.length/2+16);
+			out.write(HEADER);
+			out.write(data.length >>> 24);
+			out.write(data.length >>> 16);
+			out.write(data.length >>> 8);
+			out.write(data.length);
+			byte[] buf = new byte[4096];
+			while(!deflater.finished()){
+				int n = deflater.deflate(buf);
+				out.write(buf, 0, n);
+			}
+			return out.toByteArray();
+		}finally{
+			deflater.end();
+		}
+	}
+
+	static byte[] decompress(byte[] data){
+		if(data.length<5)throw new IllegalStateException("Corrupt compressed data");
+		ByteBuffer in = ByteBuffer.wrap(data);
+		in.get();
+		int length = in.getInt();
+		// check the length from the header before allocating
+		if(length<0 || length>(long)in.remaining()*MAX_RATIO+64){
+			throw new IllegalStateException("Corrupt compressed data: invalid length "+length);
+		}
+		byte[] result = new byte[length];
+		Inflater inflater = new Inflater(true);
+		try{
+			inflater.setInput(data, in.position(), in.remaining());
+			int len = 0;
+			while(len<result.length){
+				int n = inflater.inflate(result, len, result.length-len);
+				if(n==0 && (inflater.finished() || inflater.needsInput())){
+					throw new IllegalStateException("Corrupt compressed data");
+				}
+				len += n;
+			}
+			return result;
+		}catch(DataFormatException e){
+			throw new IllegalStateException("Corrupt compressed data", e);
+		}finally{
+			inflater.end();
+		}
+	}
+
+}
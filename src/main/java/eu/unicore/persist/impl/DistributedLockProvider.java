@@ -0,0 +1,47 @@
+package eu.unicore.persist.impl;
+
+/**
+ * provides locks that are shared between several nodes using the same database. 
+ * {@link LockSupport} makes sure that only one thread per node at a time calls 
+ * {@link #tryAcquire(String)} for a given ID.
+ *
+ * @author schuller
+ */
+public interface DistributedLockProvider {
+
+	/**
+	 * try to acquire the lock for the given ID, without waiting
+	 *
+	 * @param id - the ID of the entity
+	 * @return <code>true</code> if the lock was acquired
+	 */
+	public boolean tryAcquire(String id);
+
+	/**
+	 * release the lock for the given ID
+	 *
+	 * @param id - the ID of the entity
+	 */
+	public void release(String id);
+
+	/**
+	 * check whether the lock for the given ID is still held by this node. It may have
+	 * been lost, for example if it expired and was taken over by another node
+	 *
+	 * @param id - the ID of the entity
+	 */
+	public default boolean isHeld(String id){
+		return true;
+	}
+
+	/**
+	 * release all locks held by this node
+	 */
+	public default void releaseAll(){}
+
+	/**
+	 * release all locks and free any resources
+	 */
+	public default void shutdown(){}
+
+}
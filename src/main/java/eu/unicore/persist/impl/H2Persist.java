@@ -5,9 +5,9 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.sql.ConnectionPoolDataSource;
 
@@ -33,7 +33,7 @@ public class H2Persist<T> extends PersistImpl<T>{
 	String connectionURL;
 
 	// setup periodic cache cleanup due to h2 issue with increasing cache memory use
-	private static final Set<H2Persist<?>> instances = new HashSet<>();
+	private static final Set<H2Persist<?>> instances = ConcurrentHashMap.newKeySet();
 
 	private static final Thread cleanupThread;
 
@@ -77,12 +77,10 @@ public class H2Persist<T> extends PersistImpl<T>{
 
 	protected void resetCache() throws PersistenceException {
 		try(Connection conn = getConnection()){
-			synchronized (conn) {
-				try(Statement s = conn.createStatement()){
-					int cacheSize = config.getSubkeyIntValue(PersistenceProperties.H2_CACHESIZE, pd.getTableName());
-					s.execute("SET CACHE_SIZE "+cacheSize);
-					logger.debug("Set H2 cache size to {} kb.", cacheSize);
-				}
+			try(Statement s = conn.createStatement()){
+				int cacheSize = config.getSubkeyIntValue(PersistenceProperties.H2_CACHESIZE, pd.getTableName());
+				s.execute("SET CACHE_SIZE "+cacheSize);
+				logger.debug("Set H2 cache size to {} kb.", cacheSize);
 			}
 		}catch(SQLException s) {
 			throw new PersistenceException(s);
@@ -94,7 +92,7 @@ public class H2Persist<T> extends PersistImpl<T>{
 		List<String>cmds = new ArrayList<>();
 		String stringType = getSQLStringType();
 		cmds.add(String.format("CREATE TABLE IF NOT EXISTS %s (id %s PRIMARY KEY, data %s)",
-				pd.getTableName(), stringType, stringType));
+				pd.getTableName(), stringType, getSQLDataType()));
 		boolean haveTable = tableExists();
 		if(pd.getColumns().size()>0){
 			for(ColumnDescriptor c: pd.getColumns()){
@@ -108,6 +106,10 @@ public class H2Persist<T> extends PersistImpl<T>{
 			cmds.add(String.format("ALTER TABLE %s ADD COLUMN CREATED %s NOT NULL DEFAULT '%s'",
 					pd.getTableName(), stringType, getTimeStamp()));
 		}
+		for(String column: getIndexedColumns()){
+			cmds.add(String.format("CREATE INDEX IF NOT EXISTS %s ON %s (%s)",
+					getIndexName(column), pd.getTableName(), column));
+		}
 		return cmds;
 	}
 
@@ -116,6 +118,34 @@ public class H2Persist<T> extends PersistImpl<T>{
 		return "VARCHAR";
 	}
 
+	@Override
+	protected String getSQLBinaryType(){
+		return "VARBINARY";
+	}
+
+	/**
+	 * uses the standard MERGE syntax, since the H2 specific "MERGE ... KEY(id)" 
+	 * would overwrite the creation time of existing entries
+	 */
+	@Override
+	protected String getSQLUpsert(){
+		StringBuilder columns = new StringBuilder("id,data,created");
+		StringBuilder values = new StringBuilder("CAST(? AS VARCHAR),CAST(? AS "+getSQLDataType()+"),CAST(? AS VARCHAR)");
+		StringBuilder insertValues = new StringBuilder("S.id,S.data,S.created");
+		StringBuilder updates = new StringBuilder("T.data=S.data");
+		for(ColumnDescriptor c: pd.getColumns()){
+			String col = c.getColumn();
+			columns.append(",").append(col);
+			values.append(",CAST(? AS VARCHAR)");
+			insertValues.append(",S.").append(col);
+			updates.append(",T.").append(col).append("=S.").append(col);
+		}
+		return String.format("MERGE INTO %s T USING (VALUES (%s)) S(%s) ON T.id=S.id "
+				+ "WHEN MATCHED THEN UPDATE SET %s "
+				+ "WHEN NOT MATCHED THEN INSERT (%s) VALUES (%s);",
+				pd.getTableName(), values, columns, updates, columns, insertValues);
+	}
+
 	@Override
 	protected String getSQLShutdown(){
 		return "SHUTDOWN SCRIPT";
@@ -142,7 +172,7 @@ public class H2Persist<T> extends PersistImpl<T>{
 		if(!(new File(dir).isAbsolute())){
 			dir = "./"+dir;
 		}
-		String params = "DB_CLOSE_ON_EXIT=FALSE";
+		String params = "DB_CLOSE_ON_EXIT=FALSE;QUERY_CACHE_SIZE="+getStatementCacheSize();
 		String additionalParams = config.getSubkeyValue(PersistenceProperties.H2_OPTIONS, tableName);
 		if(additionalParams!=null){
 			params += ";" + additionalParams;
@@ -169,6 +199,11 @@ public class H2Persist<T> extends PersistImpl<T>{
 		return org.h2.Driver.class.getName();
 	}
 
+	@Override
+	protected String getConnectionURL(){
+		return createConnString();
+	}
+
 	@Override
 	protected ConnectionPoolDataSource getConnectionPoolDataSource(){
 		JdbcDataSource ds = new JdbcDataSource();
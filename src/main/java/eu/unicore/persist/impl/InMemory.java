@@ -1,11 +1,16 @@
 package eu.unicore.persist.impl;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import eu.unicore.persist.IDPage;
 import eu.unicore.persist.PersistenceException;
 
 
@@ -18,6 +23,11 @@ public class InMemory<T> extends Base<T>{
 
 	protected final Map<String,T> map = new ConcurrentHashMap<>();
 
+	// creation order of the entries
+	private final Map<String,Long> created = new ConcurrentHashMap<>();
+
+	private final AtomicLong sequence = new AtomicLong();
+
 	public InMemory(Class<T>daoClass, String tableName){
 		super(daoClass, tableName);
 	}
@@ -25,6 +35,7 @@ public class InMemory<T> extends Base<T>{
 	@Override
 	public void init() throws PersistenceException {
 		super.init();
+		initLookupFilter(true);
 	}
 
 	@Override
@@ -33,15 +44,65 @@ public class InMemory<T> extends Base<T>{
 	}
 
 	@Override
-	public void shutdown() {}
+	public void shutdown() {
+		unregisterMetrics();
+	}
 
 	@Override
 	public List<String> getIDs() throws PersistenceException {
+		return getIDs(false);
+	}
+
+	@Override
+	public List<String> getIDs(boolean oldestFirst) throws PersistenceException {
 		List<String> res = new ArrayList<>();
 		for(String s: map.keySet())res.add(s);
+		Comparator<String> order = Comparator.comparing(id -> created.getOrDefault(id, Long.MAX_VALUE));
+		res.sort(oldestFirst ? order : order.reversed());
 		return res;
 	}
 
+
+	@Override
+	public IDPage getIDPage(int limit, String cursor, boolean oldestFirst) throws PersistenceException {
+		if(limit<1)throw new IllegalArgumentException("Limit must be positive");
+		long after = oldestFirst ? Long.MIN_VALUE : Long.MAX_VALUE;
+		if(cursor!=null){
+			try{
+				after = Long.parseLong(IDPage.parseCursor(cursor)[0]);
+			}catch(NumberFormatException e){
+				throw new IllegalArgumentException("Invalid cursor <"+cursor+">");
+			}
+		}
+		final long position = after;
+		Comparator<Map.Entry<String,Long>> order = Map.Entry.comparingByValue();
+		List<Map.Entry<String,Long>> entries = created.entrySet().stream()
+				.filter(e -> oldestFirst ? e.getValue()>position : e.getValue()<position)
+				.sorted(oldestFirst ? order : order.reversed())
+				.limit(limit+1l)
+				.collect(Collectors.toList());
+		List<String> ids = new ArrayList<>();
+		for(int i=0; i<Math.min(limit, entries.size()); i++){
+			ids.add(entries.get(i).getKey());
+		}
+		String next = null;
+		if(entries.size()>limit){
+			Map.Entry<String,Long> last = entries.get(limit-1);
+			next = IDPage.createCursor(String.valueOf(last.getValue()), last.getKey());
+		}
+		return new IDPage(ids, next);
+	}
+
+	@Override
+	public Stream<String> streamIDs(boolean oldestFirst) throws PersistenceException {
+		return getIDs(oldestFirst).stream();
+	}
+
+	@Override
+	public Stream<T> streamAll() throws PersistenceException {
+		return map.values().stream();
+	}
+
 	@Override
 	public List<String> getIDs(String column, Object value) throws PersistenceException {
 		List<String> res = new ArrayList<>();
@@ -116,21 +177,25 @@ public class InMemory<T> extends Base<T>{
 	@Override
 	protected void _remove(String id) throws PersistenceException {
 		map.remove(id);
+		created.remove(id);
 	}
 
 	@Override
 	protected void _removeAll() throws PersistenceException {
 		map.clear();
+		created.clear();
 	}
 
 	@Override
 	protected void _write(T dao, String id) throws PersistenceException {
+		created.computeIfAbsent(id, x -> sequence.incrementAndGet());
 		map.put(id, dao);
 	}
 
 	@Override
 	public void purge(){
 		map.clear();
+		created.clear();
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,199 @@
+package eu.unicore.persist.impl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import eu.unicore.persist.PersistenceException;
+import eu.unicore.persist.util.UUID;
+
+/**
+ * distributed locks based on a lease table: a lock is held by inserting a row
+ * containing the owner and an expiry time. Expired leases can be taken over by
+ * other nodes, so a crashed node does not keep its locks forever.<br/>
+ *
+ * This works with all supported databases, and does not hold a database connection
+ * while the lock is held. Leases held by this node are renewed in the background
+ * (every third of the lease time), so entities can be locked for longer than the lease time.
+ * Note that the clocks of the nodes must be reasonably in sync.<br/>
+ *
+ * <b>There is no fencing</b>: the database does not reject writes from a node whose lease
+ * has been taken over. If a lease cannot be renewed in time (e.g. due to a database outage or
+ * a long GC pause) another node may lock the entity, and both nodes may write it concurrently.
+ * Lost leases are detected on renewal and when the expiry time has passed, and
+ * writes to such entities are rejected via {@link #isHeld(String)}, but a write that is already
+ * in progress cannot be stopped.
+ *
+ * @author schuller
+ */
+public class LeaseLockProvider implements DistributedLockProvider {
+
+	private static final Logger logger = LogManager.getLogger("unicore.persistence.LeaseLockProvider");
+
+	private final PersistImpl<?> persist;
+
+	private final String table;
+
+	private final String owner = UUID.newUniqueID();
+
+	private final long leaseTime;
+
+	// leases held by this node, and their expiry times
+	private final Map<String, Long> leases = new ConcurrentHashMap<>();
+
+	private volatile ScheduledFuture<?> renewal;
+
+	private static final ScheduledExecutorService renewer = Executors.newSingleThreadScheduledExecutor(
+			r -> {
+				Thread t = new Thread(r, "unicore-persistence-lease-renewal");
+				t.setDaemon(true);
+				return t;
+			});
+
+	/**
+	 * @param persist - the persistence implementation whose connections are used
+	 * @param leaseTime - lease time in milliseconds
+	 */
+	public LeaseLockProvider(PersistImpl<?> persist, long leaseTime){
+		this.persist = persist;
+		this.leaseTime = leaseTime;
+		this.table = persist.getLockTableName();
+	}
+
+	public void init() throws PersistenceException {
+		try(Connection conn = persist.getConnection()){
+			try(Statement s = conn.createStatement()){
+				s.execute(String.format("CREATE TABLE IF NOT EXISTS %s "
+						+ "(id VARCHAR(240) PRIMARY KEY, owner VARCHAR(64), expires BIGINT)", table));
+			}
+		}catch(SQLException s) {
+			throw new PersistenceException(s);
+		}
+		long interval = Math.max(1, leaseTime/3);
+		renewal = renewer.scheduleWithFixedDelay(this::renew, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public boolean tryAcquire(String id) {
+		long now = System.currentTimeMillis();
+		try(Connection conn = persist.getConnection()){
+			// take over an expired lease, or one that we still own
+			try(PreparedStatement ps = conn.prepareStatement("UPDATE "+table
+					+" SET owner=?, expires=? WHERE id=? AND (owner=? OR expires<?)")){
+				ps.setString(1, owner);
+				ps.setLong(2, now+leaseTime);
+				ps.setString(3, id);
+				ps.setString(4, owner);
+				ps.setLong(5, now);
+				if(ps.executeUpdate()>0){
+					leases.put(id, now+leaseTime);
+					return true;
+				}
+			}
+			try(PreparedStatement ps = conn.prepareStatement("INSERT INTO "+table
+					+" (id,owner,expires) VALUES (?,?,?)")){
+				ps.setString(1, id);
+				ps.setString(2, owner);
+				ps.setLong(3, now+leaseTime);
+				ps.executeUpdate();
+				leases.put(id, now+leaseTime);
+				return true;
+			}catch(SQLException e){
+				// integrity constraint violation: lock is held by another node
+				if(e.getSQLState()!=null && e.getSQLState().startsWith("23"))return false;
+				throw e;
+			}
+		}catch(SQLException s) {
+			logger.warn("Error acquiring lock for {}:{} : {}", persist.pd.getTableName(), id, s.getMessage());
+			return false;
+		}
+	}
+
+	@Override
+	public void release(String id) {
+		leases.remove(id);
+		try(Connection conn = persist.getConnection()){
+			try(PreparedStatement ps = conn.prepareStatement("DELETE FROM "+table+" WHERE id=? AND owner=?")){
+				ps.setString(1, id);
+				ps.setString(2, owner);
+				ps.executeUpdate();
+			}
+		}catch(SQLException s) {
+			logger.warn("Error releasing lock for {}:{} : {}", persist.pd.getTableName(), id, s.getMessage());
+		}
+	}
+
+	/**
+	 * check whether this node still holds the lease for the given ID, i.e. it has
+	 * been acquired, not been lost on renewal and has not expired
+	 */
+	@Override
+	public boolean isHeld(String id) {
+		Long expires = leases.get(id);
+		return expires!=null && expires>System.currentTimeMillis();
+	}
+
+	/**
+	 * extend the leases held by this node
+	 */
+	void renew() {
+		if(leases.isEmpty())return;
+		try(Connection conn = persist.getConnection()){
+			try(PreparedStatement ps = conn.prepareStatement("UPDATE "+table
+					+" SET expires=? WHERE id=? AND owner=?")){
+				for(String id: leases.keySet()){
+					long expires = System.currentTimeMillis()+leaseTime;
+					ps.setLong(1, expires);
+					ps.setString(2, id);
+					ps.setString(3, owner);
+					if(ps.executeUpdate()>0){
+						leases.replace(id, expires);
+					}
+					else if(leases.remove(id)!=null){
+						logger.error("Lost lock for {}:{}, it may have been taken over by another node",
+								persist.pd.getTableName(), id);
+					}
+				}
+			}
+		}catch(Exception s) {
+			logger.warn("Error renewing locks for {} : {}", persist.pd.getTableName(), s.getMessage());
+		}
+	}
+
+	/**
+	 * release all leases held by this node
+	 */
+	@Override
+	public void releaseAll() {
+		leases.clear();
+		try(Connection conn = persist.getConnection()){
+			try(PreparedStatement ps = conn.prepareStatement("DELETE FROM "+table+" WHERE owner=?")){
+				ps.setString(1, owner);
+				ps.executeUpdate();
+			}
+		}catch(SQLException s) {
+			logger.warn("Error releasing locks for {} : {}", persist.pd.getTableName(), s.getMessage());
+		}
+	}
+
+	/**
+	 * stop renewing leases and release the ones still held
+	 */
+	@Override
+	public void shutdown() {
+		ScheduledFuture<?> r = renewal;
+		if(r!=null)r.cancel(false);
+		releaseAll();
+	}
+
+}
@@ -1,41 +1,97 @@
 package eu.unicore.persist.impl;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+import com.google.common.collect.MapMaker;
+
 import eu.unicore.util.configuration.ConfigurationException;
 
 /**
- * helper for dealing with locks
- * 
+ * helper for dealing with locks<br/>
+ *
+ * By default, each entity gets its own lock. Locks are only kept as long as they
+ * are held or referenced by some thread, so the number of locks does not grow with
+ * the number of entities that have ever been locked.<br/>
+ *
+ * Optionally, a fixed number of locks can be shared between all entities ("striping"),
+ * trading some unnecessary contention for a fixed memory footprint.<br/>
+ *
+ * If a {@link DistributedLockProvider} is set, the distributed lock is acquired 
+ * in addition to the local one. Since this is done while holding the local lock, only 
+ * a single thread per node contends for the distributed lock.
+ *
  * @author schuller
  */
 public class LockSupport {
 
-	// store for locks keyed by the unique ID of the DAO
-	private final Map<String, Lock>locks = new HashMap<String, Lock>();
+	// locks that are currently held, keyed by the unique ID of the DAO
+	private final Map<String, EntityLock> held = new ConcurrentHashMap<>();
+
+	// all per-entity locks, reclaimed by GC once not held and no longer referenced
+	private final ConcurrentMap<String, EntityLock> locks = new MapMaker().weakValues().makeMap();
+
+	// fixed set of shared locks, if striping is enabled
+	private final ReentrantLock[] stripes;
 
 	private final String tableName;
 
+	private volatile DistributedLockProvider distributedLocks;
+
+	// wait time between attempts to acquire a distributed lock
+	private static final long RETRY_INTERVAL = TimeUnit.MILLISECONDS.toNanos(50);
+
 	public LockSupport(String tableName) throws ConfigurationException {
+		this(tableName, 0);
+	}
+
+	/**
+	 * @param tableName
+	 * @param numStripes - if larger than zero, use this fixed number of locks shared by all entities
+	 */
+	public LockSupport(String tableName, int numStripes) throws ConfigurationException {
 		this.tableName = tableName;
+		if(numStripes>0){
+			stripes = new ReentrantLock[numStripes];
+			for(int i=0; i<numStripes; i++){
+				stripes[i] = new ReentrantLock();
+			}
+		}
+		else{
+			stripes = null;
+		}
+	}
+
+	public String getTableName() {
+		return tableName;
 	}
 
-	public final synchronized Lock getOrCreateLock(String id){
-		String key = tableName + id;
-		Lock l = locks.get(key);
-		if(l==null){
-			l = new ReentrantLock();
-			locks.put(key, l);
+	public void setDistributedLockProvider(DistributedLockProvider distributedLocks) {
+		this.distributedLocks = distributedLocks;
+	}
+
+	public DistributedLockProvider getDistributedLockProvider() {
+		return distributedLocks;
+	}
+
+	public final Lock getOrCreateLock(String id){
+		if(stripes!=null){
+			EntityLock l = held.get(id);
+			return l!=null ? l : new EntityLock(id, stripes[Math.floorMod(id.hashCode(), stripes.length)]);
 		}
-		return l;
+		return locks.computeIfAbsent(id, x -> new EntityLock(x, new ReentrantLock()));
 	}
 
-	public final synchronized Lock getLockIfExists(String id){
-		String key = tableName+id;
-		return locks.get(key);
+	public final Lock getLockIfExists(String id){
+		if(stripes!=null){
+			return held.get(id);
+		}
+		return locks.get(id);
 	}
 
 	/**
@@ -43,21 +99,154 @@ public class LockSupport {
 	 * @param id
 	 * @return <code>true</code> if a lock existed and was cleaned up
 	 */
-	public synchronized boolean cleanup(String id){
+	public boolean cleanup(String id){
 		Lock l = getLockIfExists(id);
 		if(l!=null){
 			try{
 				l.unlock();
 			}catch(Exception me){}
 		}
-		String key = tableName+id;
-		return locks.remove(key)!=null;
+		held.remove(id);
+		locks.remove(id);
+		return l!=null;
+	}
+
+	public void cleanup(){
+		held.clear();
+		locks.clear();
+		DistributedLockProvider dl = distributedLocks;
+		if(dl!=null)dl.releaseAll();
 	}
 
-	public synchronized void cleanup(){
-		if(locks!=null){
-			locks.clear();
+	/**
+	 * check that the distributed lock for the given ID (if any) is still held
+	 *
+	 * @throws IllegalStateException if the distributed lock has been lost
+	 */
+	public void checkDistributedLock(String id) throws IllegalStateException {
+		DistributedLockProvider dl = distributedLocks;
+		if(dl!=null && !dl.isHeld(id)){
+			throw new IllegalStateException("Distributed lock for <"+tableName+":"+id+"> has been lost!");
 		}
 	}
 
+	int getNumberOfHeldLocks(){
+		return held.size();
+	}
+
+	/**
+	 * wraps the actual lock, and registers itself in the map of held locks while it is held,
+	 * which keeps it from being reclaimed. The bookkeeping is done while holding the
+	 * underlying lock, so it is always consistent.
+	 */
+	private class EntityLock implements Lock {
+
+		private final String id;
+
+		private final ReentrantLock lock;
+
+		// only accessed while holding the lock
+		private int holds = 0;
+
+		EntityLock(String id, ReentrantLock lock){
+			this.id = id;
+			this.lock = lock;
+		}
+
+		private void acquired(){
+			if(holds++==0){
+				held.put(id, this);
+			}
+		}
+
+		// acquire the distributed lock if required, must be called while holding the local lock
+		private boolean acquireDistributed(){
+			DistributedLockProvider dl = distributedLocks;
+			return holds>0 || dl==null || dl.tryAcquire(id);
+		}
+
+		@Override
+		public void lock() {
+			boolean interrupted = false;
+			while(true){
+				lock.lock();
+				if(acquireDistributed()){
+					acquired();
+					break;
+				}
+				lock.unlock();
+				try{
+					TimeUnit.NANOSECONDS.sleep(RETRY_INTERVAL);
+				}catch(InterruptedException ie){
+					interrupted = true;
+				}
+			}
+			if(interrupted)Thread.currentThread().interrupt();
+		}
+
+		@Override
+		public void lockInterruptibly() throws InterruptedException {
+			while(true){
+				lock.lockInterruptibly();
+				if(acquireDistributed()){
+					acquired();
+					return;
+				}
+				lock.unlock();
+				TimeUnit.NANOSECONDS.sleep(RETRY_INTERVAL);
+			}
+		}
+
+		@Override
+		public boolean tryLock() {
+			if(lock.tryLock()){
+				if(acquireDistributed()){
+					acquired();
+					return true;
+				}
+				lock.unlock();
+			}
+			return false;
+		}
+
+		@Override
+		public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+			long timeout = unit.toNanos(time);
+			long start = System.nanoTime();
+			while(true){
+				long remaining = timeout - (System.nanoTime()-start);
+				if(!lock.tryLock(Math.max(0, remaining), TimeUnit.NANOSECONDS)){
+					return false;
+				}
+				if(acquireDistributed()){
+					acquired();
+					return true;
+				}
+				lock.unlock();
+				remaining = timeout - (System.nanoTime()-start);
+				if(remaining<=0)return false;
+				TimeUnit.NANOSECONDS.sleep(Math.min(remaining, RETRY_INTERVAL));
+			}
+		}
+
+		@Override
+		public void unlock() {
+			// with striping, the underlying lock may be held via another entity's lock
+			if(!lock.isHeldByCurrentThread() || holds==0){
+				throw new IllegalMonitorStateException();
+			}
+			if(--holds==0){
+				held.remove(id, this);
+				DistributedLockProvider dl = distributedLocks;
+				if(dl!=null)dl.release(id);
+			}
+			lock.unlock();
+		}
+
+		@Override
+		public Condition newCondition() {
+			return lock.newCondition();
+		}
+
+	}
 }
@@ -0,0 +1,254 @@
+package eu.unicore.persist.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+import eu.unicore.persist.PersistenceException;
+
+/**
+ * helper for answering reads of non-existing entities without accessing the storage<br/>
+ *
+ * IDs that were recently not found are kept in a negative cache with a short time-to-live.
+ * Optionally, a Bloom filter over all existing IDs is kept, which is built from the
+ * stored IDs and updated when entities are written. Since IDs cannot be removed from a Bloom
+ * filter, it is re-built in the background once many entities have been removed, or if it
+ * is getting too full.<br/>
+ *
+ * To avoid remembering an ID as not found while it is being written concurrently, writes
+ * are counted, and an ID is only remembered if no write has started since the lookup began
+ * (see {@link #generation()}). Re-building and clearing the Bloom filter are serialized.<br/>
+ *
+ * The Bloom filter only knows about entities written through this instance, so it must
+ * not be used if other processes write to the same table.
+ *
+ * @author schuller
+ */
+public class LookupFilter {
+
+	private static final Logger logger = LogManager.getLogger("unicore.persistence.LookupFilter");
+
+	private static final double FALSE_POSITIVE_RATE = 0.01;
+
+	private final String tableName;
+
+	// recently not found IDs, or null if disabled
+	private final Cache<String,Boolean> notFound;
+
+	// source of all existing IDs, or null if the Bloom filter is disabled
+	private final Callable<Collection<String>> idSource;
+
+	private final int expectedEntries;
+
+	private volatile BloomFilter<CharSequence> bloomFilter;
+
+	// filter currently being built, which also receives new IDs
+	private volatile BloomFilter<CharSequence> pending;
+
+	// number of IDs the current Bloom filter was sized for
+	private volatile int capacity;
+
+	private final LongAdder removals = new LongAdder();
+
+	private final AtomicBoolean rebuilding = new AtomicBoolean(false);
+
+	// serializes re-building and clearing, which access the storage
+	private final ReentrantLock updateLock = new ReentrantLock();
+
+	// number of writes so far
+	private final AtomicLong writes = new AtomicLong();
+
+	/**
+	 * @param tableName
+	 * @param negativeTTL - time to remember IDs that were not found, in seconds (0: disabled)
+	 * @param maxNegativeEntries - maximum number of IDs to remember as not found
+	 * @param idSource - supplies all existing IDs for building the Bloom filter (null: disabled)
+	 * @param expectedEntries - minimum expected number of entities, used for sizing the Bloom filter
+	 */
+	public LookupFilter(String tableName, long negativeTTL, int maxNegativeEntries,
+			Callable<Collection<String>> idSource, int expectedEntries){
+		this.tableName = tableName;
+		this.notFound = negativeTTL>0 ? Caffeine.newBuilder()
+				.expireAfterWrite(Duration.ofSeconds(negativeTTL))
+				.maximumSize(maxNegativeEntries)
+				.build() : null;
+		this.idSource = idSource;
+		this.expectedEntries = Math.max(1, expectedEntries);
+	}
+
+	public boolean isEnabled(){
+		return notFound!=null || idSource!=null;
+	}
+
+	/**
+	 * build the Bloom filter (if enabled)
+	 */
+	public void init() throws Exception {
+		if(idSource!=null){
+			rebuild();
+		}
+	}
+
+	/**
+	 * returns <code>true</code> if the entity with the given ID is known not to exist
+	 */
+	public boolean isMissing(String id){
+		BloomFilter<CharSequence> bf = bloomFilter;
+		if(bf!=null && !bf.mightContain(id))return true;
+		return notFound!=null && notFound.getIfPresent(id)!=null;
+	}
+
+	/**
+	 * get the current write generation, which has to be taken before looking up
+	 * or removing entities, and passed to {@link #notFound(String, long)}
+	 */
+	public long generation(){
+		return writes.get();
+	}
+
+	/**
+	 * remember that the entity with the given ID was not found, unless a write
+	 * has started since the given generation
+	 *
+	 * @param id
+	 * @param generation - the write generation taken before the lookup
+	 */
+	public void notFound(String id, long generation){
+		if(notFound==null)return;
+		notFound.put(id, Boolean.TRUE);
+		// re-check after the put, since added() counts before it invalidates
+		if(writes.get()!=generation){
+			notFound.invalidate(id);
+		}
+	}
+
+	/**
+	 * the entity with the given ID is about to be written, or was written
+	 */
+	public void added(String id){
+		writes.incrementAndGet();
+		if(notFound!=null)notFound.invalidate(id);
+		// read 'pending' first, so the ID cannot get lost if the filters are swapped concurrently
+		BloomFilter<CharSequence> p = pending;
+		BloomFilter<CharSequence> bf = bloomFilter;
+		if(p!=null)p.put(id);
+		if(bf!=null){
+			bf.put(id);
+			if(bf.approximateElementCount()>capacity){
+				rebuildAsync();
+			}
+		}
+	}
+
+	/**
+	 * the entity with the given ID was removed
+	 *
+	 * @param id
+	 * @param generation - the write generation taken before removing the entity
+	 */
+	public void removed(String id, long generation){
+		notFound(id, generation);
+		if(bloomFilter!=null){
+			removals.increment();
+			if(removals.sum()>capacity/4){
+				rebuildAsync();
+			}
+		}
+	}
+
+	/**
+	 * remove all entities using the given action, and reset the filters. IDs added
+	 * while the entities are being removed are kept in the new Bloom filter.
+	 */
+	public void clear(Removal removeAll) throws PersistenceException {
+		updateLock.lock();
+		try{
+			BloomFilter<CharSequence> bf = bloomFilter!=null ? create(expectedEntries) : null;
+			pending = bf;
+			removeAll.run();
+			if(notFound!=null)notFound.invalidateAll();
+			if(bf!=null){
+				removals.reset();
+				capacity = expectedEntries;
+				bloomFilter = bf;
+			}
+		}finally{
+			pending = null;
+			updateLock.unlock();
+		}
+	}
+
+	/**
+	 * re-build the Bloom filter from the stored IDs. IDs added while
+	 * the filter is being built are added to both the old and new filter.
+	 */
+	public void rebuild() throws Exception {
+		if(idSource==null)return;
+		updateLock.lock();
+		try{
+			long start = System.currentTimeMillis();
+			removals.reset();
+			BloomFilter<CharSequence> current = bloomFilter;
+			int size = Math.max(expectedEntries, current!=null ? 2*(int)current.approximateElementCount() : 0);
+			BloomFilter<CharSequence> bf = create(size);
+			pending = bf;
+			Collection<String> ids = idSource.call();
+			if(ids.size()>size/2){
+				// more entities than expected, so start over with a larger filter
+				size = 2*ids.size();
+				bf = create(size);
+				pending = bf;
+				ids = idSource.call();
+			}
+			for(String id: ids){
+				bf.put(id);
+			}
+			capacity = size;
+			bloomFilter = bf;
+			logger.debug("Bloom filter for <{}> built with {} IDs in {} ms.",
+					tableName, ids.size(), System.currentTimeMillis()-start);
+		}finally{
+			pending = null;
+			updateLock.unlock();
+		}
+	}
+
+	private void rebuildAsync(){
+		if(!rebuilding.compareAndSet(false, true))return;
+		CompletableFuture.runAsync(() -> {
+			try{
+				rebuild();
+			}catch(Exception e){
+				logger.warn("Error re-building Bloom filter for <{}>", tableName, e);
+			}finally{
+				rebuilding.set(false);
+			}
+		});
+	}
+
+	private BloomFilter<CharSequence> create(int size){
+		return BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), size, FALSE_POSITIVE_RATE);
+	}
+
+	/**
+	 * removes all entities from storage
+	 */
+	public static interface Removal {
+		public void run() throws PersistenceException;
+	}
+
+}
@@ -8,9 +8,6 @@ import java.util.List;
 
 import javax.sql.ConnectionPoolDataSource;
 
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
-
 import com.mysql.cj.jdbc.MysqlConnectionPoolDataSource;
 
 import eu.unicore.persist.PersistenceException;
@@ -24,8 +21,6 @@ import eu.unicore.persist.PersistenceProperties;
  */
 public class MySQLPersist<T> extends PersistImpl<T>{
 
-	private static final Logger logger = LogManager.getLogger("unicore.persistence.MySQLPersist");
-
 	public MySQLPersist(Class<T> daoClass, String tableName) {
 		super(daoClass, tableName);
 	}
@@ -37,7 +32,7 @@ public class MySQLPersist<T> extends PersistImpl<T>{
 		String engineType = config.getSubkeyValue(PersistenceProperties.MYSQL_TABLETYPE, tb);
 		String stringType = getSQLStringType();
 		cmds.add(String.format("CREATE TABLE IF NOT EXISTS %s (id VARCHAR(240) PRIMARY KEY, data %s) ENGINE=%s",
-				tb, stringType, engineType)
+				tb, getSQLDataType(), engineType)
 		);
 		boolean haveTable = tableExists();
 		if(pd.getColumns().size()>0){
@@ -52,6 +47,14 @@ public class MySQLPersist<T> extends PersistImpl<T>{
 			cmds.add(String.format("ALTER TABLE %s ADD COLUMN created CHAR(32) NOT NULL DEFAULT '%s'",
 					tb, getTimeStamp()));
 		}
+		for(String column: getIndexedColumns()){
+			String index = getIndexName(column);
+			if(!haveTable || !indexExists(index)){
+				// TEXT columns can only be indexed using a prefix
+				String prefix = "CREATED".equals(column) ? "" : "(191)";
+				cmds.add(String.format("CREATE INDEX %s ON %s (%s%s)", index, tb, column, prefix));
+			}
+		}
 		return cmds;
 	}
 
@@ -60,6 +63,29 @@ public class MySQLPersist<T> extends PersistImpl<T>{
 		return "LONGTEXT";
 	}
 
+	@Override
+	protected String getSQLBinaryType(){
+		return "LONGBLOB";
+	}
+
+	@Override
+	protected String getSQLUpsert(){
+		StringBuilder updates = new StringBuilder("data=VALUES(data)");
+		for(ColumnDescriptor c: pd.getColumns()){
+			updates.append(",").append(c.getColumn()).append("=VALUES(").append(c.getColumn()).append(")");
+		}
+		String insert = getSQLInsert();
+		return insert.substring(0, insert.lastIndexOf(';'))+" ON DUPLICATE KEY UPDATE "+updates+";";
+	}
+
+	/**
+	 * MySQL streams rows one by one only when using this special fetch size
+	 */
+	@Override
+	protected int getFetchSize(){
+		return Integer.MIN_VALUE;
+	}
+
 	@Override
 	protected int getDefaultPort() {
 		return 3306;
@@ -87,6 +113,13 @@ public class MySQLPersist<T> extends PersistImpl<T>{
 			ds.setUseSSL(sslMode);
 			ds.setAutoReconnect(true);
 			ds.setAutoReconnectForPools(true);
+			ds.setRewriteBatchedStatements(true);
+			int statementCacheSize = getStatementCacheSize();
+			if(statementCacheSize>0) {
+				ds.setUseServerPrepStmts(true);
+				ds.setCachePrepStmts(true);
+				ds.setPrepStmtCacheSize(statementCacheSize);
+			}
 			ds.setServerTimezone(tz);
 		} catch(SQLException s) {
 			throw new PersistenceException(s);
@@ -96,22 +129,6 @@ public class MySQLPersist<T> extends PersistImpl<T>{
 		return ds;
 	}
 
-	@Override
-	protected Connection getConnection() throws SQLException {
-		Connection c = null;
-		try{
-			c = super.getConnection();	
-			((com.mysql.cj.jdbc.JdbcConnection)c).ping();
-		}catch(Exception se){
-			logger.warn("Error when getting a MySQL connection: {}, trying to reconnect.", se.getMessage());
-			try{
-				pool.cleanupPooledConnections();
-			}catch(Exception ex){/*ignored*/}
-			c = super.getConnection();
-		}
-		return c;
-	}
-
 	@Override
 	protected boolean columnExists(String column) throws PersistenceException {
 		return runCheck( String.format("SELECT 1 FROM INFORMATION_SCHEMA.COLUMNS WHERE "
@@ -129,12 +146,18 @@ public class MySQLPersist<T> extends PersistImpl<T>{
 				getDatabaseName(), pd.getTableName()));
 	}
 
+	protected boolean indexExists(String index) throws PersistenceException {
+		return runCheck( String.format("SELECT 1 FROM INFORMATION_SCHEMA.STATISTICS WHERE "
+				+ "table_schema='%s' "
+				+ "AND table_name='%s' "
+				+ "AND index_name='%s'",
+				getDatabaseName(), pd.getTableName(), index));
+	}
+
 	protected boolean runCheck(String sql) throws PersistenceException{
 		try(Connection conn = getConnection()){
-			synchronized(conn){
-				try(Statement s = conn.createStatement()){
-					return s.executeQuery(sql).next();
-				}
+			try(Statement s = conn.createStatement()){
+				return s.executeQuery(sql).next();
 			}
 		}catch(SQLException s) {
 			throw new PersistenceException(s);
@@ -1,6 +1,7 @@
 package eu.unicore.persist.impl;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
@@ -8,8 +9,6 @@ import java.util.List;
 
 import javax.sql.ConnectionPoolDataSource;
 
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
 import org.postgresql.ds.PGConnectionPoolDataSource;
 
 import eu.unicore.persist.PersistenceException;
@@ -23,8 +22,6 @@ import eu.unicore.persist.PersistenceProperties;
  */
 public class PGSQLPersist<T> extends PersistImpl<T>{
 
-	private static final Logger logger = LogManager.getLogger("unicore.persistence.PGSQLPersist");
-
 	public PGSQLPersist(Class<T> daoClass, String tableName) {
 		super(daoClass, tableName);
 	}
@@ -34,7 +31,7 @@ public class PGSQLPersist<T> extends PersistImpl<T>{
 		List<String> cmds = new ArrayList<>();
 		String tb = pd.getTableName();
 		String type = getSQLStringType();
-		cmds.add(String.format("CREATE TABLE IF NOT EXISTS %s (id VARCHAR(255) PRIMARY KEY, data %s)", tb, type));
+		cmds.add(String.format("CREATE TABLE IF NOT EXISTS %s (id VARCHAR(255) PRIMARY KEY, data %s)", tb, getSQLDataType()));
 		boolean haveTable = tableExists();
 		if(pd.getColumns().size()>0){
 			for(ColumnDescriptor c: pd.getColumns()){
@@ -48,6 +45,10 @@ public class PGSQLPersist<T> extends PersistImpl<T>{
 			cmds.add(String.format("ALTER TABLE %s ADD COLUMN IF NOT EXISTS created char(32) NOT NULL DEFAULT '%s'",
 					pd.getTableName(), getTimeStamp()));
 		}
+		for(String column: getIndexedColumns()){
+			cmds.add(String.format("CREATE INDEX IF NOT EXISTS %s ON %s (%s)",
+					getIndexName(column), tb, column));
+		}
 		return cmds;
 	}
 
@@ -56,6 +57,37 @@ public class PGSQLPersist<T> extends PersistImpl<T>{
 		return "TEXT";
 	}
 
+	@Override
+	protected String getSQLBinaryType(){
+		return "BYTEA";
+	}
+
+	@Override
+	protected String getSQLReadAll(int numIDs){
+		return "SELECT id,data FROM "+pd.getTableName()+" WHERE id = ANY(?);";
+	}
+
+	@Override
+	protected int getReadAllParameterCount(int numIDs){
+		return 1;
+	}
+
+	@Override
+	protected void parametrizePSReadAll(Connection conn, PreparedStatement ps, List<String> ids, int numParams)
+			throws SQLException {
+		ps.setArray(1, conn.createArrayOf("varchar", ids.toArray()));
+	}
+
+	@Override
+	protected String getSQLUpsert(){
+		StringBuilder updates = new StringBuilder("data=EXCLUDED.data");
+		for(ColumnDescriptor c: pd.getColumns()){
+			updates.append(",").append(c.getColumn()).append("=EXCLUDED.").append(c.getColumn());
+		}
+		String insert = getSQLInsert();
+		return insert.substring(0, insert.lastIndexOf(';'))+" ON CONFLICT (id) DO UPDATE SET "+updates+";";
+	}
+
 	@Override
 	protected String getDefaultDriverName(){
 		return org.postgresql.Driver.class.getName();
@@ -79,6 +111,7 @@ public class PGSQLPersist<T> extends PersistImpl<T>{
 		String sslModeS = config.getSubkeyValue(PersistenceProperties.PGSQL_SSL, pd.getTableName());
 		boolean sslMode = Boolean.parseBoolean(sslModeS);
 		ds.setSsl(sslMode);
+		ds.setPreparedStatementCacheQueries(getStatementCacheSize());
 		if(sslMode) {
 			ds.setSslmode("allow");
 		}
@@ -86,21 +119,6 @@ public class PGSQLPersist<T> extends PersistImpl<T>{
 		return ds;
 	}
 
-	@Override
-	protected Connection getConnection() throws SQLException{
-		Connection c = null;
-		try{
-			c = super.getConnection();
-		}catch(Exception se){
-			logger.warn("Error when getting a PGSQL connection: {}, trying to reconnect.", se.getMessage());
-			try{
-				pool.cleanupPooledConnections();
-			}catch(Exception ex){/*ignored*/}
-			c = super.getConnection();
-		}
-		return c;
-	}
-
 	@Override
 	protected boolean columnExists(String column) throws PersistenceException {
 		return runCheck(String.format("SELECT 1 FROM pg_tables WHERE "
@@ -116,10 +134,8 @@ public class PGSQLPersist<T> extends PersistImpl<T>{
 
 	protected boolean runCheck(String sql) throws PersistenceException {
 		try(Connection conn = getConnection()){
-			synchronized(conn){
-				try(Statement s = conn.createStatement()){
-					return s.executeQuery(sql).next();
-				}
+			try(Statement s = conn.createStatement()){
+				return s.executeQuery(sql).next();
 			}
 		}catch(SQLException s) {
 			throw new PersistenceException(s);
@@ -1,5 +1,8 @@
 package eu.unicore.persist.impl;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
@@ -8,17 +11,36 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.sql.ConnectionPoolDataSource;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import eu.unicore.persist.IDPage;
+import eu.unicore.persist.ObjectMarshaller;
 import eu.unicore.persist.PersistenceException;
 import eu.unicore.persist.PersistenceProperties;
+import eu.unicore.persist.UncheckedPersistenceException;
+import eu.unicore.persist.metrics.Operation;
+import eu.unicore.persist.metrics.PersistMetrics;
 import eu.unicore.persist.util.Pool;
+import eu.unicore.persist.util.PoolRegistry;
 
 
 /**
@@ -37,6 +59,19 @@ public abstract class PersistImpl<T> extends SQL<T> {
 	// for logging purposes
 	protected String connectionURL = "";
 
+	// SQL of the frequently used statements, computed once in init()
+	private String sqlRead;
+	private String sqlInsert;
+	private String sqlUpdate;
+	private String sqlUpsert;
+	private String sqlExists;
+	private String sqlDelete;
+	private final Map<Integer,String> sqlReadAll = new ConcurrentHashMap<>();
+	private final Map<String,String> sqlSelectKeys = new ConcurrentHashMap<>();
+
+	// marshaller for the data column, possibly compressing
+	private ObjectMarshaller<T> storageMarshaller;
+
 	public PersistImpl(Class<T> daoClass, String tableName) {
 		super(daoClass, tableName);
 	}
@@ -44,25 +79,82 @@ public abstract class PersistImpl<T> extends SQL<T> {
 	@Override
 	public void init()throws PersistenceException {
 		super.init();
+		setupStorageMarshaller();
+		prepareSQL();
 		String table = pd.getTableName();
 		int maxConn = config.getSubkeyIntValue(PersistenceProperties.DB_POOL_MAXSIZE, table);
 		int timeout = config.getSubkeyIntValue(PersistenceProperties.DB_POOL_TIMEOUT, table);
 		setupConnectionPool(getConnectionPoolDataSource(), maxConn, timeout);
 		createTables();
+		if(isDistributedLocking()){
+			long leaseTime = 1000l * config.getSubkeyIntValue(PersistenceProperties.DB_CLUSTER_LEASE_TIME, table);
+			LeaseLockProvider locks = new LeaseLockProvider(this, leaseTime);
+			locks.init();
+			getLockSupport().setDistributedLockProvider(locks);
+			logger.info("Distributed locking enabled for <{}>, lease time={} ms", table, leaseTime);
+		}
+		// other nodes write to the same table, so a local Bloom filter would be incomplete
+		initLookupFilter(!isDistributedLocking());
+		startCacheWarmup();
+	}
+
+	protected void setupStorageMarshaller(){
+		String table = pd.getTableName();
+		storageMarshaller = marshaller;
+		if(config.getSubkeyBooleanValue(PersistenceProperties.DB_COMPRESS_ENABLE, table)){
+			int threshold = config.getSubkeyIntValue(PersistenceProperties.DB_COMPRESS_THRESHOLD, table);
+			storageMarshaller = new CompressingMarshaller<>(marshaller, threshold);
+			logger.info("Compression enabled for <{}>, threshold={} bytes", table, threshold);
+		}
+	}
+
+	/**
+	 * build the SQL of the frequently used statements. The statements themselves are 
+	 * cached per physical connection by the JDBC driver, see {@link #getStatementCacheSize()}
+	 */
+	protected void prepareSQL(){
+		sqlRead = getSQLRead();
+		sqlInsert = getSQLInsert();
+		sqlUpdate = getSQLUpdate();
+		sqlUpsert = getSQLUpsert();
+		sqlExists = getSQLExists();
+		sqlDelete = getSQLDelete();
+		sqlReadAll.clear();
+		sqlSelectKeys.clear();
+	}
+
+	/**
+	 * the number of prepared statements the JDBC driver should cache per connection
+	 */
+	protected int getStatementCacheSize(){
+		return config.getSubkeyIntValue(PersistenceProperties.DB_STATEMENT_CACHE_SIZE, pd.getTableName());
+	}
+
+	protected boolean isDistributedLocking(){
+		return Boolean.parseBoolean(config.getSubkeyValue(PersistenceProperties.DB_LOCKS_DISTRIBUTED, pd.getTableName()));
 	}
 
 	@Override
 	public void shutdown()throws PersistenceException {
+		boolean lastUser = false;
 		try {
-			String shutDown = getSQLShutdown();
-			if(shutDown!=null && shutDown.length()>0) {
-				_execute(getSQLShutdown());
+			saveHotIDs();
+			DistributedLockProvider dl = getLockSupport().getDistributedLockProvider();
+			if(dl!=null)dl.shutdown();
+			// other tables may still use the database
+			lastUser = releasePool();
+			if(lastUser){
+				String shutDown = getSQLShutdown();
+				if(shutDown!=null && shutDown.length()>0) {
+					_execute(shutDown);
+				}
 			}
 		}
 		catch(Exception e){
 			logger.warn("Shutting down: "+e.getMessage());
 		}finally{
-			shutdownPool();
+			unregisterMetrics();
+			if(lastUser)shutdownPool();
 		}
 	}
 
@@ -73,63 +165,212 @@ public abstract class PersistImpl<T> extends SQL<T> {
 
 	@Override
 	public List<String> getIDs(boolean oldestFirst)throws PersistenceException {
+		long start = System.nanoTime();
+		String sql = getSQLSelectAllKeys(oldestFirst);
 		try(Connection conn = getConnection()){
 			List<String>result = new ArrayList<>();
-			synchronized (conn) {
-				try (Statement s = conn.createStatement()){
-					ResultSet rs = s.executeQuery(getSQLSelectAllKeys(oldestFirst));
-					while(rs.next()){
-						result.add(rs.getString(1));
-					}
+			try (Statement s = conn.createStatement()){
+				ResultSet rs = s.executeQuery(sql);
+				while(rs.next()){
+					result.add(rs.getString(1));
 				}
 			}
 			return result;
 		}catch(SQLException s) {
 			throw new PersistenceException(s);
+		}finally{
+			metrics.record(Operation.GET_IDS, start);
+			slowLog.finished(sql, start);
 		}
 	}
 
+	@Override
+	public IDPage getIDPage(int limit, String cursor, boolean oldestFirst)throws PersistenceException {
+		if(limit<1)throw new IllegalArgumentException("Limit must be positive");
+		String[] after = cursor!=null ? IDPage.parseCursor(cursor) : null;
+		long start = System.nanoTime();
+		String sql = getSQLSelectKeysPage(after==null, oldestFirst);
+		try(Connection conn = getConnection()){
+			List<String>ids = new ArrayList<>();
+			String lastCreated = null;
+			try(PreparedStatement ps = conn.prepareStatement(sql)){
+				int i = 1;
+				if(after!=null){
+					ps.setString(i++, after[0]);
+					ps.setString(i++, after[0]);
+					ps.setString(i++, after[1]);
+				}
+				// one more, to find out whether there is a next page
+				ps.setInt(i, limit+1);
+				ResultSet rs = ps.executeQuery();
+				boolean hasNext = false;
+				while(rs.next()){
+					if(ids.size()==limit){
+						hasNext = true;
+						break;
+					}
+					ids.add(rs.getString(1));
+					lastCreated = rs.getString(2);
+				}
+				String next = hasNext ? IDPage.createCursor(lastCreated, ids.get(limit-1)) : null;
+				return new IDPage(ids, next);
+			}
+		}catch(SQLException s) {
+			throw new PersistenceException(s);
+		}finally{
+			metrics.record(Operation.GET_IDS, start);
+			slowLog.finished(sql, start);
+		}
+	}
+
+	@Override
+	public Stream<String> streamIDs(boolean oldestFirst)throws PersistenceException {
+		return stream(getSQLSelectAllKeys(oldestFirst), rs -> rs.getString(1));
+	}
+
+	@Override
+	public Stream<T> streamAll()throws PersistenceException {
+		return stream(getSQLSelectAll(), rs -> getData(rs, 2));
+	}
+
+	@Override
+	protected int _readNewest(int limit, BiConsumer<String,T> action)throws PersistenceException {
+		try(Stream<Map.Entry<String,T>> rows = stream(getSQLSelectNewest(limit),
+				rs -> Map.entry(rs.getString(1), getData(rs, 2)))){
+			int count = 0;
+			Iterator<Map.Entry<String,T>> it = rows.iterator();
+			while(it.hasNext()){
+				Map.Entry<String,T> e = it.next();
+				action.accept(e.getKey(), e.getValue());
+				count++;
+			}
+			return count;
+		}
+	}
+
+	protected interface RowMapper<R> {
+		public R map(ResultSet rs) throws SQLException;
+	}
+
+	/**
+	 * run the given query and stream the results using a forward-only result set.
+	 * The connection is held until the stream is closed. Auto-commit is switched
+	 * off while streaming, which allows PostgreSQL to use a cursor.
+	 *
+	 * @param sql - the query
+	 * @param mapper - creates a stream element from the current row
+	 */
+	protected <R> Stream<R> stream(String sql, RowMapper<R> mapper) throws PersistenceException {
+		Connection conn = null;
+		PreparedStatement stmt = null;
+		boolean resetAutoCommit = false;
+		try{
+			conn = getConnection();
+			final Connection c = conn;
+			final boolean autoCommit = conn.getAutoCommit();
+			conn.setAutoCommit(false);
+			resetAutoCommit = autoCommit;
+			stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			final PreparedStatement ps = stmt;
+			ps.setFetchSize(getFetchSize());
+			final ResultSet rs = ps.executeQuery();
+			Spliterator<R> rows = new Spliterators.AbstractSpliterator<R>(Long.MAX_VALUE,
+					Spliterator.ORDERED | Spliterator.NONNULL) {
+				@Override
+				public boolean tryAdvance(Consumer<? super R> action) {
+					try{
+						if(!rs.next())return false;
+						action.accept(mapper.map(rs));
+						return true;
+					}catch(SQLException s){
+						throw new UncheckedPersistenceException(new PersistenceException(s));
+					}
+				}
+			};
+			return StreamSupport.stream(rows, false).onClose(() -> {
+				try{
+					rs.close();
+					ps.close();
+					c.setAutoCommit(autoCommit);
+				}catch(SQLException s){
+					logger.warn("Error closing result stream: {}", s.getMessage());
+				}finally{
+					try{
+						c.close();
+					}catch(SQLException s){}
+				}
+			});
+		}catch(SQLException s) {
+			// same cleanup as when closing the stream, so the connection is returned in its original state
+			if(conn!=null){
+				try{
+					if(stmt!=null)stmt.close();
+					if(resetAutoCommit)conn.setAutoCommit(true);
+				}catch(SQLException e){
+					logger.warn("Error cleaning up after failed query: {}", e.getMessage());
+				}finally{
+					try{
+						conn.close();
+					}catch(SQLException e){}
+				}
+			}
+			throw new PersistenceException(s);
+		}
+	}
+
+	/**
+	 * fetch size to use when streaming results
+	 */
+	protected int getFetchSize(){
+		return config.getSubkeyIntValue(PersistenceProperties.DB_FETCH_SIZE, pd.getTableName());
+	}
+
 	@Override
 	public List<String> getIDs(String column, Object value)throws PersistenceException {
+		long start = System.nanoTime();
+		String sql = sqlSelectKeys.computeIfAbsent(column, c -> getSQLSelectKeys(c, value));
 		try (Connection conn = getConnection()){
 			List<String>result = new ArrayList<>();
-			synchronized (conn) {
-				try(PreparedStatement ps = conn.prepareStatement(getSQLSelectKeys(column,value))){
-					ps.setString(1, String.valueOf(value));
-					ResultSet rs=ps.executeQuery();
-					while(rs.next()){
-						result.add(rs.getString(1));
-					}
+			try(PreparedStatement ps = conn.prepareStatement(sql)){
+				ps.setString(1, String.valueOf(value));
+				ResultSet rs=ps.executeQuery();
+				while(rs.next()){
+					result.add(rs.getString(1));
 				}
 			}
 			return result;
 		}
 		catch(SQLException s) {
 			throw new PersistenceException(s);
+		}finally{
+			metrics.record(Operation.GET_IDS, start);
+			slowLog.finished(sql, start);
 		}
 	}
 
 	@Override
 	public List<String> findIDs(boolean orMode, String column, String... values)throws PersistenceException {
+		long start = System.nanoTime();
+		String sql = getSQLFuzzySelect(column, values.length, orMode);
 		try(Connection conn = getConnection()){
 			List<String>result = new ArrayList<>();
-			synchronized (conn) {
-				String sql = getSQLFuzzySelect(column, values.length, orMode);
-				try(PreparedStatement ps = conn.prepareStatement(sql)){
-					int i=1;
-					for(String val: values){
-						ps.setString(i, "%"+val+"%");
-						i++;
-					}
-					ResultSet rs = ps.executeQuery();
-					while(rs.next()){
-						result.add(rs.getString(1));
-					}
+			try(PreparedStatement ps = conn.prepareStatement(sql)){
+				int i=1;
+				for(String val: values){
+					ps.setString(i, "%"+val+"%");
+					i++;
+				}
+				ResultSet rs = ps.executeQuery();
+				while(rs.next()){
+					result.add(rs.getString(1));
 				}
 			}
 			return result;
 		}catch(SQLException s) {
 			throw new PersistenceException(s);
+		}finally{
+			metrics.record(Operation.GET_IDS, start);
+			slowLog.finished(sql, start);
 		}
 	}
 
@@ -140,100 +381,247 @@ public abstract class PersistImpl<T> extends SQL<T> {
 
 	@Override
 	public int getRowCount(String column, Object value) throws PersistenceException {
+		long start = System.nanoTime();
+		String sql = getSQLRowCount(column);
 		try(Connection conn = getConnection()){
-			synchronized (conn) {
-				try (Statement s = conn.createStatement()){
-					ResultSet rs = s.executeQuery(getSQLRowCount(column, value));
-					rs.next();
-					return rs.getInt(1);
-				}
+			try (PreparedStatement ps = conn.prepareStatement(sql)){
+				ps.setString(1, String.valueOf(value));
+				ResultSet rs = ps.executeQuery();
+				rs.next();
+				return rs.getInt(1);
 			}
 		}catch(SQLException s) {
 			throw new PersistenceException(s);
+		}finally{
+			metrics.record(Operation.QUERY, start);
+			slowLog.finished(sql, start);
 		}
 	}
 
 	@Override
 	public int getRowCount()throws PersistenceException {
+		long start = System.nanoTime();
+		String sql = getSQLRowCount();
 		try(Connection conn = getConnection()){
-			synchronized (conn) {
-				try (Statement s = conn.createStatement()){
-					ResultSet rs = s.executeQuery(getSQLRowCount());
-					rs.next();
-					return rs.getInt(1);
-				}
+			try (Statement s = conn.createStatement()){
+				ResultSet rs = s.executeQuery(sql);
+				rs.next();
+				return rs.getInt(1);
 			}
 		}catch(SQLException s) {
 			throw new PersistenceException(s);
+		}finally{
+			metrics.record(Operation.QUERY, start);
+			slowLog.finished(sql, start);
 		}
 	}
 
 	@Override
 	public Map<String,String> getColumnValues(String column)throws PersistenceException {
+		long start = System.nanoTime();
+		String sql = getSQLSelectColumn(column);
 		Map<String,String>result = new HashMap<>();
 		try(Connection conn = getConnection()){
-			synchronized (conn) {
-				try(Statement s = conn.createStatement()){
-					ResultSet rs = s.executeQuery(getSQLSelectColumn(column));
-					while(rs.next()){
-						result.put(rs.getString(1), rs.getString(2));
-					}
+			try(Statement s = conn.createStatement()){
+				ResultSet rs = s.executeQuery(sql);
+				while(rs.next()){
+					result.put(rs.getString(1), rs.getString(2));
 				}
 			}
 			return result;
 		}catch(SQLException s) {
 			throw new PersistenceException(s);
+		}finally{
+			metrics.record(Operation.QUERY, start);
+			slowLog.finished(sql, start);
 		}
 	}
 
 	@Override
 	protected T _read(String id)throws PersistenceException {
+		long start = System.nanoTime();
 		T result = null; 
 		try(Connection conn = getConnection()){
-			synchronized(conn){
-				try(PreparedStatement ps = conn.prepareStatement(getSQLRead())){
-					ps.setString(1, id);
+			try(PreparedStatement ps = conn.prepareStatement(sqlRead)){
+				ps.setString(1, id);
+				ResultSet rs = ps.executeQuery();
+				while(rs.next()){
+					result = getData(rs, 1);
+				}
+			}
+			return result;
+		}catch(SQLException s) {
+			throw new PersistenceException(s);
+		}finally{
+			slowLog.finished(sqlRead, start);
+		}
+	}
+
+	/**
+	 * maximum number of IDs read in a single query by {@link #_readAll(List)}
+	 */
+	protected static final int READ_CHUNK_SIZE = 128;
+
+	@Override
+	protected Map<String,T> _readAll(List<String> ids)throws PersistenceException {
+		long begin = System.nanoTime();
+		Map<String,T> result = new HashMap<>();
+		try(Connection conn = getConnection()){
+			for(int start=0; start<ids.size(); start+=READ_CHUNK_SIZE){
+				List<String> chunk = ids.subList(start, Math.min(ids.size(), start+READ_CHUNK_SIZE));
+				int numParams = getReadAllParameterCount(chunk.size());
+				try(PreparedStatement ps = conn.prepareStatement(
+						sqlReadAll.computeIfAbsent(numParams, this::getSQLReadAll))){
+					parametrizePSReadAll(conn, ps, chunk, numParams);
 					ResultSet rs = ps.executeQuery();
 					while(rs.next()){
-						result = marshaller.decode(rs.getString(1));
+						result.put(rs.getString(1), getData(rs, 2));
 					}
 				}
 			}
 			return result;
 		}catch(SQLException s) {
 			throw new PersistenceException(s);
+		}finally{
+			slowLog.finished(sqlReadAll.get(getReadAllParameterCount(Math.min(ids.size(), READ_CHUNK_SIZE))), begin);
+		}
+	}
+
+	/**
+	 * the number of parameters of the multi-read statement is rounded up to the next
+	 * power of two, to limit the number of different statements the database has to parse
+	 */
+	protected int getReadAllParameterCount(int numIDs){
+		int n = 1;
+		while(n<numIDs)n<<=1;
+		return n;
+	}
+
+	/**
+	 * sets the ID parameters of the multi-read statement, unused parameters
+	 * are filled with the last ID
+	 */
+	protected void parametrizePSReadAll(Connection conn, PreparedStatement ps, List<String> ids, int numParams)
+			throws SQLException {
+		for(int i=0; i<numParams; i++){
+			ps.setString(i+1, ids.get(Math.min(i, ids.size()-1)));
 		}
 	}
 
 	@Override
 	protected void _write(T dao, String id)throws PersistenceException {
+		long start = System.nanoTime();
+		String upsert = sqlUpsert;
 		try(Connection conn = getConnection()){
-			synchronized (conn) {
-				try(Statement s = conn.createStatement()){
-					if(s.executeQuery(getSQLExists(id)).next()){
-						// update
-						try(PreparedStatement ps = conn.prepareStatement(getSQLUpdate())){
-							parametrizePSUpdate(ps,id, dao);
-							ps.executeUpdate();
-						}
-					}
-					else{
-						// insert
-						try(PreparedStatement ps = conn.prepareStatement(getSQLInsert())){
-							parametrizePSInsert(ps, id, dao);
-							ps.executeUpdate();
+			if(upsert!=null){
+				try(PreparedStatement ps = conn.prepareStatement(upsert)){
+					parametrizePSInsert(ps, id, dao);
+					ps.executeUpdate();
+				}
+				return;
+			}
+			if(exists(conn, id)){
+				// update
+				try(PreparedStatement ps = conn.prepareStatement(sqlUpdate)){
+					parametrizePSUpdate(ps,id, dao);
+					ps.executeUpdate();
+				}
+			}
+			else{
+				// insert
+				try(PreparedStatement ps = conn.prepareStatement(sqlInsert)){
+					parametrizePSInsert(ps, id, dao);
+					ps.executeUpdate();
+				}
+			}
+		}catch(SQLException s) {
+			throw new PersistenceException(s);
+		}finally{
+			slowLog.finished(upsert!=null ? upsert : sqlUpdate, start);
+		}
+	}
+
+	/**
+	 * maximum number of statements sent to the database in a single batch
+	 */
+	protected static final int BATCH_SIZE = 500;
+
+	@Override
+	protected void _writeAll(List<T> daos, List<String> ids)throws PersistenceException {
+		long start = System.nanoTime();
+		String upsert = sqlUpsert;
+		try(Connection conn = getConnection()){
+			boolean autoCommit = conn.getAutoCommit();
+			conn.setAutoCommit(false);
+			try{
+				if(upsert!=null){
+					try(PreparedStatement ps = conn.prepareStatement(upsert)){
+						for(int i=0; i<daos.size(); i++){
+							parametrizePSInsert(ps, ids.get(i), daos.get(i));
+							ps.addBatch();
+							if((i+1)%BATCH_SIZE==0)ps.executeBatch();
 						}
+						ps.executeBatch();
 					}
 				}
+				else{
+					writeBatchWithoutUpsert(conn, daos, ids);
+				}
+				conn.commit();
+			}catch(SQLException | PersistenceException | RuntimeException e){
+				conn.rollback();
+				throw e;
+			}finally{
+				conn.setAutoCommit(autoCommit);
 			}
 		}catch(SQLException s) {
 			throw new PersistenceException(s);
+		}finally{
+			slowLog.finished(upsert!=null ? upsert : sqlInsert, start);
+		}
+	}
+
+	private void writeBatchWithoutUpsert(Connection conn, List<T> daos, List<String> ids)
+			throws SQLException, PersistenceException {
+		Set<String> existing = new HashSet<>();
+		try(PreparedStatement psExists = conn.prepareStatement(sqlExists);
+			PreparedStatement psUpdate = conn.prepareStatement(sqlUpdate);
+			PreparedStatement psInsert = conn.prepareStatement(sqlInsert))
+		{
+			for(int i=0; i<daos.size(); i++){
+				String id = ids.get(i);
+				if(existing.contains(id) || exists(psExists, id)){
+					parametrizePSUpdate(psUpdate, id, daos.get(i));
+					psUpdate.addBatch();
+				}
+				else{
+					parametrizePSInsert(psInsert, id, daos.get(i));
+					psInsert.addBatch();
+				}
+				existing.add(id);
+			}
+			// inserts first, since updates in the same batch may refer to them
+			psInsert.executeBatch();
+			psUpdate.executeBatch();
+		}
+	}
+
+	private boolean exists(Connection conn, String id) throws SQLException {
+		try(PreparedStatement ps = conn.prepareStatement(sqlExists)){
+			return exists(ps, id);
+		}
+	}
+
+	private boolean exists(PreparedStatement ps, String id) throws SQLException {
+		ps.setString(1, id);
+		try(ResultSet rs = ps.executeQuery()){
+			return rs.next();
 		}
 	}
 
 	@Override
 	protected void _remove(String id) throws PersistenceException {
-		_executeUpdate(getSQLDelete(id));
+		_executeUpdate(sqlDelete, id);
 	}
 
 	@Override
@@ -242,26 +630,36 @@ public abstract class PersistImpl<T> extends SQL<T> {
 	}
 
 	protected void _execute(String sql) throws PersistenceException {
+		long start = System.nanoTime();
 		try(Connection conn = getConnection()){
-			synchronized (conn) {
-				try(Statement s = conn.createStatement()){
-					s.execute(sql);
-				}
+			try(Statement s = conn.createStatement()){
+				s.execute(sql);
 			}
 		}catch(SQLException s) {
 			throw new PersistenceException(s);
+		}finally{
+			slowLog.finished(sql, start);
 		}
 	}
 
-	protected void _executeUpdate(String sql) throws PersistenceException {
+	/**
+	 * execute an update using a prepared statement
+	 * @param sql - the SQL
+	 * @param params - values of the statement parameters
+	 */
+	protected void _executeUpdate(String sql, String... params) throws PersistenceException {
+		long start = System.nanoTime();
 		try(Connection conn = getConnection()){
-			synchronized (conn) {
-				try(Statement s = conn.createStatement()){
-					s.executeUpdate(sql);
+			try(PreparedStatement ps = conn.prepareStatement(sql)){
+				for(int i=0; i<params.length; i++){
+					ps.setString(i+1, params[i]);
 				}
+				ps.executeUpdate();
 			}
 		}catch(SQLException s) {
 			throw new PersistenceException(s);
+		}finally{
+			slowLog.finished(sql, start);
 		}
 	}
 
@@ -282,14 +680,12 @@ public abstract class PersistImpl<T> extends SQL<T> {
 	protected void createTables()throws PersistenceException {
 		List<String> cmds = getSQLCreateTable();
 		try(Connection conn = getConnection()){
-			synchronized (conn) {
-				try(Statement s = conn.createStatement()){
-					for(String sql: cmds){
-						try{
-							s.execute(sql);
-						}catch(SQLException e){
-							logger.error(e);
-						}
+			try(Statement s = conn.createStatement()){
+				for(String sql: cmds){
+					try{
+						s.execute(sql);
+					}catch(SQLException e){
+						logger.error(e);
 					}
 				}
 			}
@@ -304,12 +700,54 @@ public abstract class PersistImpl<T> extends SQL<T> {
 		}catch(PersistenceException e){
 			//OK, probably tables did not exist...
 		}
+		if(isDistributedLocking()){
+			try{
+				_execute("DROP TABLE IF EXISTS "+getLockTableName());
+			}catch(PersistenceException e){}
+		}
+	}
+
+	/**
+	 * set the data parameter, in binary or string form depending on the marshaller
+	 */
+	protected void setData(PreparedStatement ps, int index, T dao) throws SQLException {
+		if(storageMarshaller.isBinary()){
+			byte[] data = storageMarshaller.serialize(dao);
+			metrics.rowWritten(data.length);
+			ps.setBytes(index, data);
+		}
+		else{
+			String data = storageMarshaller.encode(dao);
+			metrics.rowWritten(PersistMetrics.utf8Length(data));
+			ps.setString(index, data);
+		}
+	}
+
+	/**
+	 * read the entity from the data column, in binary or string form depending on the marshaller
+	 */
+	protected T getData(ResultSet rs, int index) throws SQLException {
+		if(storageMarshaller.isBinary()){
+			byte[] data = rs.getBytes(index);
+			if(data==null)return null;
+			metrics.rowRead(data.length);
+			long start = System.nanoTime();
+			T result = storageMarshaller.deserialize(data);
+			slowLog.decoded(System.nanoTime()-start);
+			return result;
+		}
+		String data = rs.getString(index);
+		if(data!=null)metrics.rowRead(PersistMetrics.utf8Length(data));
+		long start = System.nanoTime();
+		T result = storageMarshaller.decode(data);
+		slowLog.decoded(System.nanoTime()-start);
+		return result;
 	}
 
 	public void parametrizePSInsert(PreparedStatement psInsert, String id, T dao)throws PersistenceException {
 		try {
 			psInsert.setString(1, id);
-			psInsert.setString(2, marshaller.encode(dao));
+			setData(psInsert, 2, dao);
 			psInsert.setString(3, getTimeStamp());
 			int i = 4;
 			Object val = null;
@@ -330,7 +768,7 @@ public abstract class PersistImpl<T> extends SQL<T> {
 	public void parametrizePSUpdate(PreparedStatement psUpdate, String id, T dao)
 			throws PersistenceException {
 		try {
-			psUpdate.setString(1, marshaller.encode(dao));
+			setData(psUpdate, 1, dao);
 			int i=2;
 			Object val=null;
 			for(ColumnDescriptor c: pd.getColumns()){
@@ -401,23 +839,122 @@ public abstract class PersistImpl<T> extends SQL<T> {
 
 	Pool pool;
 
+	private PoolRegistry poolRegistry;
+
+	// key of the shared pool in the registry, or null if the pool is not shared
+	private String sharedPoolKey;
+
+	// limits the number of connections this table takes from a shared pool
+	private Semaphore quota;
+
+	private final AtomicBoolean poolReleased = new AtomicBoolean(false);
+
+	/**
+	 * allows to use a connection pool shared with other tables on the same database,
+	 * if configured via {@link PersistenceProperties#DB_POOL_SHARED}
+	 */
+	public void setPoolRegistry(PoolRegistry poolRegistry) {
+		this.poolRegistry = poolRegistry;
+	}
+
 	/**
 	 * @param ds - JDBC poolable data source
-	 * @param max_connections - how many connections to keep in the pool
+	 * @param max_connections - how many connections to keep in the pool (for a shared pool: 
+	 *        how many connections this table may use at most)
 	 * @param timeout - time in seconds when to idle out connections
 	 */
 	protected void setupConnectionPool(ConnectionPoolDataSource ds, int max_connections, int timeout)throws PersistenceException{
 		if(ds==null){
 			throw new IllegalStateException("Must ConnectionPoolDataSource");
 		}
-		pool=new Pool(ds,max_connections,timeout);
-		logger.info("Connection pooling enabled, maxConnections={} timeout={}", max_connections, timeout);
+		String table = pd.getTableName();
+		if(poolRegistry!=null && config.getSubkeyBooleanValue(PersistenceProperties.DB_POOL_SHARED, table)){
+			int sharedMax = config.getSubkeyIntValue(PersistenceProperties.DB_POOL_SHARED_MAXSIZE, table);
+			sharedPoolKey = getPoolKey();
+			pool = poolRegistry.acquire(sharedPoolKey, () -> createPool(ds, sharedMax, timeout));
+			quota = new Semaphore(Math.max(1, Math.min(max_connections, pool.getMaxConnections())), true);
+			logger.info("Using shared connection pool for <{}>, maxConnections={} quota={} tables={}",
+					table, pool.getMaxConnections(), quota.availablePermits(), poolRegistry.getUsers(sharedPoolKey));
+		}
+		else{
+			pool = createPool(ds, max_connections, timeout);
+		}
+	}
+
+	private Pool createPool(ConnectionPoolDataSource ds, int max_connections, int timeout){
+		Pool p = new Pool(ds,max_connections,timeout);
+		String table = pd.getTableName();
+		int minIdle = config.getSubkeyIntValue(PersistenceProperties.DB_POOL_MIN_IDLE, table);
+		long idleTimeout = 1000l * config.getSubkeyIntValue(PersistenceProperties.DB_POOL_IDLE_TIMEOUT, table);
+		long maxLifetime = 1000l * config.getSubkeyIntValue(PersistenceProperties.DB_POOL_MAX_LIFETIME, table);
+		long validateAfter = 1000l * config.getSubkeyIntValue(PersistenceProperties.DB_POOL_VALIDATE_AFTER, table);
+		p.setMinIdle(Math.min(minIdle, max_connections));
+		p.setIdleTimeout(idleTimeout);
+		p.setMaxLifetime(maxLifetime);
+		p.setValidationThreshold(validateAfter);
+		if(minIdle>0 || idleTimeout>0 || maxLifetime>0){
+			p.startHousekeeping();
+		}
+		logger.info("Connection pooling enabled, maxConnections={} timeout={} minIdle={} idleTimeout={}ms maxLifetime={}ms validateAfter={}ms",
+				max_connections, timeout, minIdle, idleTimeout, maxLifetime, validateAfter);
+		return p;
+	}
+
+	/**
+	 * identifies the database for sharing connection pools: the connection URL,
+	 * the user name and a SHA-256 digest of the password
+	 */
+	protected String getPoolKey(){
+		String password = getPassword();
+		String digest = "";
+		if(password!=null){
+			try{
+				digest = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+						.digest(password.getBytes(StandardCharsets.UTF_8)));
+			}catch(NoSuchAlgorithmException e){
+				throw new IllegalStateException(e);
+			}
+		}
+		return getConnectionURL()+"|"+getUserName()+"|"+digest;
+	}
+
+	/**
+	 * the effective connection URL, available after {@link #getConnectionPoolDataSource()}
+	 * has been called
+	 */
+	protected String getConnectionURL(){
+		return connectionURL;
+	}
+
+	protected boolean isSharedPool(){
+		return sharedPoolKey!=null;
+	}
+
+	protected Connection getConnection()throws SQLException {
+		long start = System.nanoTime();
+		try{
+			return pool.getConnection(quota);
+		}finally{
+			metrics.record(Operation.POOL_WAIT, start);
+			slowLog.poolWaited(System.nanoTime()-start);
+		}
 	}
 
-	protected synchronized Connection getConnection()throws SQLException {
-		return pool.getConnection();
+	/**
+	 * release the connection pool. A shared pool may still be used by other tables
+	 *
+	 * @return <code>true</code> if this table was the last one using the pool (and the
+	 *         database), so the pool has to be disposed. <code>false</code> if it is
+	 *         still in use, or if it had already been released
+	 */
+	protected boolean releasePool() {
+		if(!poolReleased.compareAndSet(false, true))return false;
+		return sharedPoolKey==null || poolRegistry.release(sharedPoolKey);
 	}
 
+	/**
+	 * dispose the connection pool, once {@link #releasePool()} has returned <code>true</code>
+	 */
 	protected void shutdownPool() throws PersistenceException {
 		try {
 			pool.dispose();
@@ -428,11 +965,9 @@ public abstract class PersistImpl<T> extends SQL<T> {
 
 	protected boolean tableExists() throws PersistenceException {
 		try(Connection conn = getConnection()){
-			synchronized(conn){
-				DatabaseMetaData md = conn.getMetaData();
-				ResultSet rs = md.getTables(null, null,  pd.getTableName().toUpperCase(), null);
-				return rs.next();
-			}
+			DatabaseMetaData md = conn.getMetaData();
+			ResultSet rs = md.getTables(null, null,  pd.getTableName().toUpperCase(), null);
+			return rs.next();
 		}catch(SQLException s) {
 			throw new PersistenceException(s);
 		}
@@ -440,11 +975,9 @@ public abstract class PersistImpl<T> extends SQL<T> {
 
 	protected boolean columnExists(String column) throws PersistenceException {
 		try(Connection conn = getConnection()){
-			synchronized(conn){
-				DatabaseMetaData md = conn.getMetaData();
-				ResultSet rs = md.getColumns(null, null, pd.getTableName().toUpperCase(), column.toUpperCase());
-				return rs.next();
-			}
+			DatabaseMetaData md = conn.getMetaData();
+			ResultSet rs = md.getColumns(null, null, pd.getTableName().toUpperCase(), column.toUpperCase());
+			return rs.next();
 		}catch(SQLException s) {
 			throw new PersistenceException(s);
 		}
@@ -1,6 +1,7 @@
 package eu.unicore.persist.impl;
 
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
@@ -19,22 +20,74 @@ public abstract class SQL<T> extends Base<T>{
 
 	protected abstract List<String> getSQLCreateTable() throws PersistenceException;
 
+	/**
+	 * SQL type of the data column, depending on whether the marshaller produces binary data
+	 */
+	protected String getSQLDataType(){
+		return marshaller!=null && marshaller.isBinary() ? getSQLBinaryType() : getSQLStringType();
+	}
+
+	protected String getSQLBinaryType(){
+		return "BLOB";
+	}
+
 	protected String getSQLStringType(){
 		return "VARCHAR";
 	}
 
+	/**
+	 * get the name of the index for the given column
+	 */
+	protected String getIndexName(String column){
+		return pd.getTableName()+"_"+column+"_idx";
+	}
+
+	/**
+	 * get the columns that should be indexed: CREATED, which is used for ordering,
+	 * and the additional columns marked as "indexed"
+	 */
+	protected List<String> getIndexedColumns(){
+		List<String> result = new ArrayList<>();
+		result.add("CREATED");
+		for(ColumnDescriptor c: pd.getColumns()){
+			if(c.isIndexed())result.add(c.getColumn());
+		}
+		return result;
+	}
+
+	/**
+	 * name of the table used for distributed locking
+	 */
+	protected String getLockTableName(){
+		return pd.getTableName()+"_LOCKS";
+	}
+
 	protected String getSQLDropTable(){
 		return "DROP TABLE "+pd.getTableName()+";";
 	}
 
-	protected String getSQLExists(String id){
-		return "SELECT id FROM "+pd.getTableName()+" WHERE id='"+id+"'"+";";
+	protected String getSQLExists(){
+		return "SELECT id FROM "+pd.getTableName()+" WHERE id=? ;";
 	}
 
 	protected String getSQLRead(){
 		return "SELECT data FROM "+pd.getTableName()+" WHERE id=? ;";
 	}
 
+	/**
+	 * @param numIDs - the number of ID parameters
+	 */
+	protected String getSQLReadAll(int numIDs){
+		StringBuilder sb = new StringBuilder();
+		sb.append("SELECT id,data FROM ").append(pd.getTableName()).append(" WHERE id IN (");
+		for(int i=0; i<numIDs; i++){
+			if(i>0)sb.append(",");
+			sb.append("?");
+		}
+		sb.append(");");
+		return sb.toString();
+	}
+
 	protected String getSQLInsert(){
 		if(pd.getColumns().size()>0){
 			StringBuffer columns = new StringBuffer();
@@ -65,8 +118,19 @@ public abstract class SQL<T> extends Base<T>{
 		}
 	}
 
-	protected String getSQLDelete(String id){
-		return "DELETE FROM "+pd.getTableName()+" WHERE id='"+id+"';";
+	/**
+	 * get the SQL for inserting or updating an entry in a single statement. 
+	 * The statement takes the same parameters as {@link #getSQLInsert()}, and must not
+	 * modify the "created" column of an existing entry.
+	 *
+	 * @return SQL string or <code>null</code> if not supported by the database
+	 */
+	protected String getSQLUpsert(){
+		return null;
+	}
+
+	protected String getSQLDelete(){
+		return "DELETE FROM "+pd.getTableName()+" WHERE id=? ;";
 	}
 
 	protected String getSQLDeleteAll(){
@@ -74,8 +138,44 @@ public abstract class SQL<T> extends Base<T>{
 	}
 
 	protected String getSQLSelectAllKeys(boolean oldestFirst){
-		return "SELECT ID, CREATED FROM "+pd.getTableName()+" ORDER BY CREATED"
-				+(oldestFirst? "" : " DESC")+";";
+		String order = oldestFirst? "" : " DESC";
+		return "SELECT ID, CREATED FROM "+pd.getTableName()+" ORDER BY CREATED"+order
+				+", ID"+order+";";
+	}
+
+	/**
+	 * select a page of keys and creation times ordered by (CREATED, ID). When selecting
+	 * the next page, the position of the last entry of the previous page is given by its
+	 * creation time and ID, so that entry need not exist anymore.
+	 * Parameters are the previous creation time (twice) and ID, if not the first page, and the limit.
+	 *
+	 * @param firstPage - whether to select the first page
+	 * @param oldestFirst - ordering
+	 */
+	protected String getSQLSelectKeysPage(boolean firstPage, boolean oldestFirst){
+		String tb = pd.getTableName();
+		String cmp = oldestFirst? ">" : "<";
+		String order = oldestFirst? "" : " DESC";
+		StringBuilder sb = new StringBuilder();
+		sb.append("SELECT ID, CREATED FROM ").append(tb);
+		if(!firstPage){
+			sb.append(" WHERE CREATED").append(cmp).append("?");
+			sb.append(" OR (CREATED=? AND ID").append(cmp).append("?)");
+		}
+		sb.append(" ORDER BY CREATED").append(order).append(", ID").append(order);
+		sb.append(" LIMIT ?;");
+		return sb.toString();
+	}
+
+	/**
+	 * select ID and data of the most recently created entities
+	 */
+	protected String getSQLSelectNewest(int limit){
+		return "SELECT id,data FROM "+pd.getTableName()+" ORDER BY CREATED DESC, ID DESC LIMIT "+limit+";";
+	}
+
+	protected String getSQLSelectAll(){
+		return "SELECT id,data FROM "+pd.getTableName()+";";
 	}
 
 	protected String getSQLSelectKeys(String column, Object value){
@@ -106,9 +206,8 @@ public abstract class SQL<T> extends Base<T>{
 		return "SELECT COUNT(ID) FROM "+pd.getTableName()+";";
 	}
 
-	protected String getSQLRowCount(String column, Object value){
-		return "SELECT COUNT(ID) FROM "+pd.getTableName()+" WHERE "+column+"='"+value.toString()+
-				"';";
+	protected String getSQLRowCount(String column){
+		return "SELECT COUNT(ID) FROM "+pd.getTableName()+" WHERE "+column+"=?;";
 	}
 
 	protected String getSQLShutdown(){
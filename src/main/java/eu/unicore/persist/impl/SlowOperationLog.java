@@ -0,0 +1,166 @@
+package eu.unicore.persist.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * logs database operations and lock acquisitions that take longer than a
+ * configurable threshold<br/>
+ *
+ * The time spent in the different phases of an operation (waiting for a pooled connection,
+ * waiting for the entity lock, executing the statement and decoding the results) is
+ * collected per thread, so that the log message shows where the time was spent.
+ * The number of messages is limited per minute, further messages are suppressed and only
+ * counted.
+ *
+ * @author schuller
+ */
+public class SlowOperationLog {
+
+	private static final Logger logger = LogManager.getLogger("unicore.persistence.SlowOperations");
+
+	private static final int POOL_WAIT = 0;
+	private static final int LOCK_WAIT = 1;
+	private static final int DECODE = 2;
+
+	// maximum length of the logged SQL
+	private static final int MAX_SQL_LENGTH = 200;
+
+	// timings of the current operation, per thread
+	private static final ThreadLocal<long[]> phases = ThreadLocal.withInitial(() -> new long[3]);
+
+	private final String tableName;
+
+	private final long queryThreshold;
+
+	private final long lockThreshold;
+
+	private final int maxPerMinute;
+
+	private final AtomicLong windowStart = new AtomicLong();
+
+	private final AtomicInteger messages = new AtomicInteger();
+
+	private final LongAdder suppressed = new LongAdder();
+
+	/**
+	 * @param tableName
+	 * @param queryThreshold - log database operations taking longer than this (in milliseconds, 0: disabled)
+	 * @param lockThreshold - log lock acquisitions taking longer than this (in milliseconds, 0: disabled)
+	 * @param maxPerMinute - maximum number of messages per minute
+	 */
+	public SlowOperationLog(String tableName, long queryThreshold, long lockThreshold, int maxPerMinute){
+		this.tableName = tableName;
+		this.queryThreshold = TimeUnit.MILLISECONDS.toNanos(queryThreshold);
+		this.lockThreshold = TimeUnit.MILLISECONDS.toNanos(lockThreshold);
+		this.maxPerMinute = maxPerMinute;
+	}
+
+	public boolean isEnabled(){
+		return queryThreshold>0 || lockThreshold>0;
+	}
+
+	/**
+	 * a database operation is starting: record the time it waited for a connection
+	 */
+	public void poolWaited(long nanos){
+		if(queryThreshold<=0)return;
+		long[] p = phases.get();
+		p[POOL_WAIT] = nanos;
+		p[DECODE] = 0;
+	}
+
+	/**
+	 * record time spent decoding results of the current database operation
+	 */
+	public void decoded(long nanos){
+		if(queryThreshold<=0)return;
+		phases.get()[DECODE] += nanos;
+	}
+
+	/**
+	 * record the time spent waiting for the lock on the given entity, which is
+	 * also reported if the following database operation is slow
+	 *
+	 * @return true if a message was logged
+	 */
+	public boolean lockWaited(String id, long nanos){
+		if(queryThreshold>0){
+			phases.get()[LOCK_WAIT] = nanos;
+		}
+		if(lockThreshold>0 && nanos>lockThreshold && permit()){
+			logger.warn("Slow lock acquisition for <{}:{}>: waited {} ms, thread <{}>{}",
+					tableName, id, millis(nanos), Thread.currentThread().getName(), suppressedInfo());
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * a database operation has finished: log it if it took too long
+	 *
+	 * @param sql - the SQL of the operation, without the parameter values
+	 * @param start - start time as given by {@link System#nanoTime()}, including the pool wait
+	 * @return true if a message was logged
+	 */
+	public boolean finished(String sql, long start){
+		if(queryThreshold<=0)return false;
+		long total = System.nanoTime()-start;
+		long[] p = phases.get();
+		boolean logged = false;
+		if(total>queryThreshold && permit()){
+			logged = true;
+			long execute = Math.max(0, total-p[POOL_WAIT]-p[DECODE]);
+			logger.warn("Slow operation on <{}>: {} ms (pool wait {} ms, lock wait {} ms, "
+					+ "execute {} ms, decode {} ms), thread <{}>, SQL: {}{}",
+					tableName, millis(total), millis(p[POOL_WAIT]), millis(p[LOCK_WAIT]),
+					millis(execute), millis(p[DECODE]), Thread.currentThread().getName(),
+					shorten(sql), suppressedInfo());
+		}
+		clear();
+		return logged;
+	}
+
+	/**
+	 * forget the timings of the current thread
+	 */
+	public void clear(){
+		if(queryThreshold<=0)return;
+		long[] p = phases.get();
+		p[POOL_WAIT] = 0;
+		p[LOCK_WAIT] = 0;
+		p[DECODE] = 0;
+	}
+
+	private boolean permit(){
+		long now = System.currentTimeMillis();
+		long start = windowStart.get();
+		if(now-start>=60000 && windowStart.compareAndSet(start, now)){
+			messages.set(0);
+		}
+		if(messages.incrementAndGet()<=maxPerMinute){
+			return true;
+		}
+		suppressed.increment();
+		return false;
+	}
+
+	private String suppressedInfo(){
+		long s = suppressed.sumThenReset();
+		return s>0 ? " ("+s+" similar messages suppressed)" : "";
+	}
+
+	private static long millis(long nanos){
+		return TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+
+	private static String shorten(String sql){
+		if(sql==null)return "n/a";
+		return sql.length()>MAX_SQL_LENGTH ? sql.substring(0, MAX_SQL_LENGTH)+"..." : sql;
+	}
+}
@@ -0,0 +1,110 @@
+package eu.unicore.persist.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * lock-free histogram of latencies in nanoseconds<br/>
+ *
+ * Values are counted in buckets with logarithmic spacing, each power of two is split
+ * into {@link #SUB_BUCKETS} linear sub-buckets, so percentiles are accurate to within
+ * about 12%. Values up to 2^{@link #MAX_EXPONENT} ns (about 18 minutes) are resolved, 
+ * larger ones are counted in the highest bucket.
+ *
+ * @author schuller
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 3;
+
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	private static final int MAX_EXPONENT = 40;
+
+	private final AtomicLongArray buckets = new AtomicLongArray((MAX_EXPONENT+1)*SUB_BUCKETS);
+
+	private final LongAdder count = new LongAdder();
+
+	private final LongAdder sum = new LongAdder();
+
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * record a value
+	 * @param nanos - the latency in nanoseconds
+	 */
+	public void record(long nanos){
+		if(nanos<0)nanos = 0;
+		buckets.incrementAndGet(index(nanos));
+		count.increment();
+		sum.add(nanos);
+		max.accumulate(nanos);
+	}
+
+	static int index(long value){
+		if(value<SUB_BUCKETS)return (int)value;
+		int exponent = 63-Long.numberOfLeadingZeros(value);
+		if(exponent>MAX_EXPONENT)return (MAX_EXPONENT+1)*SUB_BUCKETS-1;
+		int sub = (int)(value >>> (exponent-SUB_BUCKET_BITS)) & (SUB_BUCKETS-1);
+		return (exponent-SUB_BUCKET_BITS+1)*SUB_BUCKETS+sub;
+	}
+
+	/**
+	 * the upper limit of the values counted in the given bucket
+	 */
+	static long upperLimit(int index){
+		if(index<SUB_BUCKETS)return index;
+		int exponent = index/SUB_BUCKETS+SUB_BUCKET_BITS-1;
+		int sub = index%SUB_BUCKETS;
+		return ((long)(SUB_BUCKETS+sub+1) << (exponent-SUB_BUCKET_BITS))-1;
+	}
+
+	public long getCount(){
+		return count.sum();
+	}
+
+	public long getTotal(){
+		return sum.sum();
+	}
+
+	public long getMax(){
+		return max.get();
+	}
+
+	public double getMean(){
+		long n = count.sum();
+		return n==0 ? 0 : (double)sum.sum()/n;
+	}
+
+	/**
+	 * get the value below which the given fraction of the recorded values are (approximately)
+	 * @param quantile - between 0 and 1, e.g. 0.99
+	 */
+	public long getPercentile(double quantile){
+		long total = 0;
+		for(int i=0; i<buckets.length(); i++){
+			total += buckets.get(i);
+		}
+		if(total==0)return 0;
+		long rank = Math.max(1, (long)Math.ceil(quantile*total));
+		long seen = 0;
+		for(int i=0; i<buckets.length(); i++){
+			seen += buckets.get(i);
+			if(seen>=rank){
+				return Math.min(upperLimit(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	public void reset(){
+		for(int i=0; i<buckets.length(); i++){
+			buckets.set(i, 0);
+		}
+		count.reset();
+		sum.reset();
+		max.reset();
+	}
+
+}
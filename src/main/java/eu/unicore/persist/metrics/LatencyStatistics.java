@@ -0,0 +1,69 @@
+package eu.unicore.persist.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * snapshot of a {@link LatencyHistogram}, with times in microseconds
+ *
+ * @author schuller
+ */
+public class LatencyStatistics {
+
+	private final long count;
+
+	private final double mean;
+
+	private final long p50;
+
+	private final long p90;
+
+	private final long p99;
+
+	private final long max;
+
+	@ConstructorProperties({"count", "mean", "p50", "p90", "p99", "max"})
+	public LatencyStatistics(long count, double mean, long p50, long p90, long p99, long max){
+		this.count = count;
+		this.mean = mean;
+		this.p50 = p50;
+		this.p90 = p90;
+		this.p99 = p99;
+		this.max = max;
+	}
+
+	public static LatencyStatistics of(LatencyHistogram h){
+		return new LatencyStatistics(h.getCount(), h.getMean()/1000,
+				h.getPercentile(0.5)/1000, h.getPercentile(0.9)/1000,
+				h.getPercentile(0.99)/1000, h.getMax()/1000);
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public double getMean() {
+		return mean;
+	}
+
+	public long getP50() {
+		return p50;
+	}
+
+	public long getP90() {
+		return p90;
+	}
+
+	public long getP99() {
+		return p99;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("count=%d mean=%.1fus p50=%dus p90=%dus p99=%dus max=%dus",
+				count, mean, p50, p90, p99, max);
+	}
+}
@@ -0,0 +1,33 @@
+package eu.unicore.persist.metrics;
+
+/**
+ * the operations for which latencies are recorded
+ *
+ * @author schuller
+ */
+public enum Operation {
+
+	READ,
+
+	WRITE,
+
+	DELETE,
+
+	GET_IDS,
+
+	/**
+	 * other queries, like row counts and column values
+	 */
+	QUERY,
+
+	/**
+	 * waiting for an entity lock
+	 */
+	LOCK_WAIT,
+
+	/**
+	 * waiting for a database connection from the pool
+	 */
+	POOL_WAIT,
+
+}
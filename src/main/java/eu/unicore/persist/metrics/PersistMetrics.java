@@ -0,0 +1,188 @@
+package eu.unicore.persist.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * per-table operation counters and latency histograms. Recording is lock-free.
+ *
+ * @author schuller
+ */
+public class PersistMetrics implements PersistMetricsMXBean {
+
+	private final String table;
+
+	private final Map<Operation, LatencyHistogram> latencies = new EnumMap<>(Operation.class);
+
+	private final LongAdder rowsRead = new LongAdder();
+
+	private final LongAdder rowsWritten = new LongAdder();
+
+	private final LongAdder bytesRead = new LongAdder();
+
+	private final LongAdder bytesWritten = new LongAdder();
+
+	// makes MBean names unique if several instances use the same table
+	private static final AtomicInteger instances = new AtomicInteger();
+
+	private ObjectName objectName;
+
+	public PersistMetrics(String table){
+		this.table = table;
+		for(Operation op: Operation.values()){
+			latencies.put(op, new LatencyHistogram());
+		}
+	}
+
+	/**
+	 * record the latency of an operation
+	 *
+	 * @param op - the operation
+	 * @param start - start time as given by {@link System#nanoTime()}
+	 */
+	public void record(Operation op, long start){
+		latencies.get(op).record(System.nanoTime()-start);
+	}
+
+	public void rowRead(long bytes){
+		rowsRead.increment();
+		bytesRead.add(bytes);
+	}
+
+	public void rowWritten(long bytes){
+		rowsWritten.increment();
+		bytesWritten.add(bytes);
+	}
+
+	/**
+	 * the number of bytes of the given string in UTF-8 encoding, without encoding it.
+	 * As in {@link String#getBytes(java.nio.charset.Charset)}, an unpaired surrogate counts as one byte.
+	 */
+	public static long utf8Length(CharSequence s){
+		long length = 0;
+		int n = s.length();
+		for(int i=0; i<n; i++){
+			char c = s.charAt(i);
+			if(c<0x80){
+				length++;
+			}
+			else if(c<0x800){
+				length += 2;
+			}
+			else if(Character.isSurrogate(c)){
+				if(Character.isHighSurrogate(c) && i+1<n && Character.isLowSurrogate(s.charAt(i+1))){
+					length += 4;
+					i++;
+				}
+				else{
+					length++;
+				}
+			}
+			else{
+				length += 3;
+			}
+		}
+		return length;
+	}
+
+	public LatencyHistogram getHistogram(Operation op){
+		return latencies.get(op);
+	}
+
+	@Override
+	public String getTable() {
+		return table;
+	}
+
+	@Override
+	public Map<String, LatencyStatistics> getLatencies() {
+		Map<String, LatencyStatistics> result = new LinkedHashMap<>();
+		latencies.forEach((op, h) -> result.put(op.name(), LatencyStatistics.of(h)));
+		return result;
+	}
+
+	@Override
+	public long getRowsRead() {
+		return rowsRead.sum();
+	}
+
+	@Override
+	public long getRowsWritten() {
+		return rowsWritten.sum();
+	}
+
+	@Override
+	public long getBytesRead() {
+		return bytesRead.sum();
+	}
+
+	@Override
+	public long getBytesWritten() {
+		return bytesWritten.sum();
+	}
+
+	@Override
+	public void reset() {
+		latencies.values().forEach(LatencyHistogram::reset);
+		rowsRead.reset();
+		rowsWritten.reset();
+		bytesRead.reset();
+		bytesWritten.reset();
+	}
+
+	/**
+	 * register as an MBean with the platform MBean server (if not yet registered). The name
+	 * contains the table name and a unique instance number, for example
+	 * <code>eu.unicore.persist:type=Persist,table="JOBS",instance=1</code>
+	 *
+	 * @return the name of the MBean
+	 */
+	public synchronized ObjectName registerMBean() throws JMException {
+		if(objectName==null){
+			ObjectName name = new ObjectName("eu.unicore.persist:type=Persist,table="
+					+ObjectName.quote(table)+",instance="+instances.incrementAndGet());
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+			objectName = name;
+		}
+		return objectName;
+	}
+
+	/**
+	 * unregister the MBean, if it was registered
+	 */
+	public synchronized void unregisterMBean() throws JMException {
+		if(objectName!=null){
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+			objectName = null;
+		}
+	}
+
+	/**
+	 * the name of the MBean, or <code>null</code> if not registered
+	 */
+	public synchronized ObjectName getObjectName() {
+		return objectName;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("Metrics for <").append(table).append(">: rowsRead=").append(getRowsRead())
+		.append(" bytesRead=").append(getBytesRead())
+		.append(" rowsWritten=").append(getRowsWritten())
+		.append(" bytesWritten=").append(getBytesWritten());
+		latencies.forEach((op, h) -> {
+			if(h.getCount()>0){
+				sb.append("\n  ").append(op).append(": ").append(LatencyStatistics.of(h));
+			}
+		});
+		return sb.toString();
+	}
+}
@@ -0,0 +1,29 @@
+package eu.unicore.persist.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of the {@link PersistMetrics} of a table
+ *
+ * @author schuller
+ */
+public interface PersistMetricsMXBean {
+
+	public String getTable();
+
+	/**
+	 * latencies per operation (in microseconds)
+	 */
+	public Map<String, LatencyStatistics> getLatencies();
+
+	public long getRowsRead();
+
+	public long getRowsWritten();
+
+	public long getBytesRead();
+
+	public long getBytesWritten();
+
+	public void reset();
+
+}
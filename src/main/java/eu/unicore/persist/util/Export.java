@@ -6,8 +6,9 @@ import java.io.FileOutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.sql.SQLException;
-import java.util.Collection;
+import java.util.Iterator;
 import java.util.Properties;
+import java.util.stream.Stream;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -17,6 +18,7 @@ import eu.unicore.persist.Persist;
 import eu.unicore.persist.PersistenceException;
 import eu.unicore.persist.PersistenceFactory;
 import eu.unicore.persist.PersistenceProperties;
+import eu.unicore.persist.UncheckedPersistenceException;
 
 /**
  * Exports a database to a JSON file
@@ -51,18 +53,25 @@ public class Export {
 	public void doExport()throws Exception{
     	JsonWriter writer = new JsonWriter(output);
 		int errors=0;
-		Collection<String>ids = input.getIDs();
 		writer.beginArray();
 		int n = 0;
-		for(String s: ids){
-			System.out.print("Converting "+s+ " ...");
-			try{
-				gson.toJson(input.read(s), daoClass,writer);
-				System.out.println("... OK");
-				n++;
-			}catch(Exception ex){
-				System.out.println("... error: "+ex.getMessage());
-				errors++;
+		try(Stream<?> entries = input.streamAll()){
+			Iterator<?> it = entries.iterator();
+			while(true){
+				try{
+					if(!it.hasNext())break;
+					Object dao = it.next();
+					gson.toJson(dao, daoClass,writer);
+					n++;
+					if(n%1000==0)System.out.println("Converted "+n+" entries ...");
+				}catch(UncheckedPersistenceException upe){
+					// database error, cannot continue
+					throw upe.getCause();
+				}catch(Exception ex){
+					// entry could not be converted, skip it
+					System.out.println("Error: "+ex.getMessage());
+					errors++;
+				}
 			}
 		}
 		writer.endArray();
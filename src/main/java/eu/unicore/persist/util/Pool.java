@@ -2,20 +2,37 @@ package eu.unicore.persist.util;
 
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.sql.ConnectionEvent;
 import javax.sql.ConnectionEventListener;
 import javax.sql.ConnectionPoolDataSource;
 import javax.sql.PooledConnection;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
 /**
  * A simple standalone JDBC connection pool manager.
  * <p>
- * The public methods of this class are thread-safe.
+ * The public methods of this class are thread-safe. Apart from waiting for a free
+ * connection when <code>maxConnections</code> connections are in use, 
+ * no locks are used: idle connections are kept in a lock-free stack, 
+ * with the most recently used connection being re-used first.
+ * <p>
+ * Optionally, connections are validated before re-use if they have been idle for
+ * some time, and a background task closes connections that have been idle for too long
+ * or that exceed their maximum lifetime, while keeping a minimum number of idle 
+ * connections ready for use.
  * <p>
  * Home page: <a href="http://www.source-code.biz">www.source-code.biz</a><br>
  * Author: Christian d'Heureuse, Inventec Informatik AG, Zurich, Switzerland<br>
@@ -23,14 +40,31 @@ import javax.sql.PooledConnection;
  */
 public class Pool {
 
+	private static final Logger logger = LogManager.getLogger("unicore.persistence.Pool");
+
+	// shared by all pools, runs the (short) housekeeping tasks
+	private static final ScheduledExecutorService housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread t = new Thread(r, "unicore-persistence-pool-housekeeping");
+		t.setDaemon(true);
+		return t;
+	});
+
+	// timeout in seconds for validating a connection
+	private static final int VALIDATION_TIMEOUT = 5;
+
 	private final ConnectionPoolDataSource dataSource;
 	private final int maxConnections;
 	private final int timeout;
 	private final Semaphore semaphore;
-	private final Queue<PooledConnection> recycledConnections;
-	private int activeConnections;
-	private final PoolConnectionEventListener poolConnectionEventListener;
-	private boolean isDisposed;
+	private final Deque<Entry> recycledConnections;
+	private final AtomicInteger activeConnections = new AtomicInteger();
+	private volatile boolean isDisposed;
+
+	private volatile int minIdle = 0;
+	private volatile long idleTimeout = 0;
+	private volatile long maxLifetime = 0;
+	private volatile long validationThreshold = -1;
+	private final AtomicReference<ScheduledFuture<?>> housekeeping = new AtomicReference<>();
 
 	/**
 	 * Constructs a MiniConnectionPoolManager object with a timeout of 60
@@ -61,27 +95,82 @@ public class Pool {
 		this.timeout = timeout;
 		if (maxConnections < 1)
 			throw new IllegalArgumentException("Invalid maxConnections value.");
-		semaphore = new Semaphore(maxConnections, true);
-		recycledConnections = new LinkedList<PooledConnection>();
-		poolConnectionEventListener = new PoolConnectionEventListener();
+		semaphore = new Semaphore(maxConnections);
+		recycledConnections = new ConcurrentLinkedDeque<>();
+	}
+
+	/**
+	 * @param minIdle - number of idle connections the housekeeping task tries to keep open
+	 */
+	public void setMinIdle(int minIdle) {
+		this.minIdle = minIdle;
+	}
+
+	/**
+	 * @param idleTimeout - time in millis after which idle connections are closed, 
+	 *        zero to keep them forever 
+	 */
+	public void setIdleTimeout(long idleTimeout) {
+		this.idleTimeout = idleTimeout;
+	}
+
+	/**
+	 * @param maxLifetime - time in millis after which connections are closed 
+	 *        (once they are no longer in use), zero for unlimited lifetime
+	 */
+	public void setMaxLifetime(long maxLifetime) {
+		this.maxLifetime = maxLifetime;
+	}
+
+	/**
+	 * @param validationThreshold - connections that have been idle longer than this
+	 *        (in millis) are validated before being handed out. Negative to disable validation
+	 */
+	public void setValidationThreshold(long validationThreshold) {
+		this.validationThreshold = validationThreshold;
+	}
+
+	/**
+	 * start the background housekeeping, using an interval derived from the 
+	 * idle timeout and maximum lifetime
+	 */
+	public void startHousekeeping() {
+		long interval = 30000;
+		if (idleTimeout > 0)
+			interval = Math.min(interval, idleTimeout / 2);
+		if (maxLifetime > 0)
+			interval = Math.min(interval, maxLifetime / 2);
+		startHousekeeping(Math.max(1000, interval));
+	}
+
+	/**
+	 * start the background housekeeping
+	 * @param interval - housekeeping interval in millis
+	 */
+	public void startHousekeeping(long interval) {
+		if (isDisposed)
+			throw new IllegalStateException("Connection pool has been disposed.");
+		cancel(housekeeping.getAndSet(
+				housekeeper.scheduleWithFixedDelay(this::housekeeping, 0, interval, TimeUnit.MILLISECONDS)));
+		// disposed concurrently
+		if (isDisposed)
+			cancel(housekeeping.getAndSet(null));
+	}
+
+	private static void cancel(ScheduledFuture<?> task) {
+		if (task != null)
+			task.cancel(false);
 	}
 
 	/**
 	 * Closes all unused pooled connections and disposes the pool, after 
 	 * which it will become unusable
 	 */
-	public synchronized void dispose() throws SQLException {
+	public void dispose() throws SQLException {
 		if (!isDisposed) {
 			isDisposed = true;
-			SQLException e = null;
-			while (!recycledConnections.isEmpty()) {
-				try {
-					recycledConnections.remove().close();
-				} catch (SQLException e2) {
-					e = e2;
-				}
-			}
-			if (e!=null)throw e;
+			cancel(housekeeping.getAndSet(null));
+			closeIdleConnections();
 		}
 	}
 
@@ -90,12 +179,17 @@ public class Pool {
 	 * create a new connection
 	 * @throws SQLException
 	 */
-	public synchronized void cleanupPooledConnections() throws SQLException {
+	public void cleanupPooledConnections() throws SQLException {
 		if (isDisposed) throw new IllegalStateException("Pool is disposed.");
+		closeIdleConnections();
+	}
+
+	private void closeIdleConnections() throws SQLException {
 		SQLException e = null;
-		while (!recycledConnections.isEmpty()) {
+		Entry entry;
+		while ((entry = recycledConnections.pollFirst()) != null) {
 			try {
-				recycledConnections.remove().close();
+				entry.pconn.close();
 			} catch (SQLException e2) {
 				e = e2;
 			}
@@ -113,93 +207,235 @@ public class Pool {
 	 * @return a new Connection object.
 	 */
 	public Connection getConnection() throws SQLException {
-		// This routine is unsynchronized, because semaphore.tryAcquire() may block.
-		synchronized (this) {
-			if (isDisposed)
-				throw new IllegalStateException(
-						"Connection pool has been disposed.");
-		}
+		return getConnection(null);
+	}
+
+	/**
+	 * Retrieves a connection from the connection pool, limiting the number of
+	 * connections used by one client of a shared pool. A permit of the given quota 
+	 * is acquired first, and released when the connection is closed. The total time 
+	 * waiting for the quota and for a free connection is limited by <code>timeout</code>.
+	 *
+	 * @param quota - permits of the client, or <code>null</code> for no limit
+	 * @return a new Connection object.
+	 */
+	public Connection getConnection(Semaphore quota) throws SQLException {
+		if (isDisposed)
+			throw new IllegalStateException("Connection pool has been disposed.");
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
 		try {
-			if (!semaphore.tryAcquire(timeout, TimeUnit.SECONDS))
+			if (quota != null && !quota.tryAcquire(timeout, TimeUnit.SECONDS))
+				throw new SQLException("Timeout while waiting for a free database connection (quota exceeded).");
+			if (!semaphore.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+				if (quota != null)
+					quota.release();
 				throw new SQLException("Timeout while waiting for a free database connection.");
+			}
 		} catch (InterruptedException e) {
 			throw new SQLException(
 					"Interrupted while waiting for a database connection.", e);
 		}
 		boolean ok = false;
 		try {
-			Connection conn = getConnection2();
+			Connection conn = getConnection2(quota);
 			ok = true;
 			return conn;
 		} finally {
-			if (!ok)
+			if (!ok) {
 				semaphore.release();
+				if (quota != null)
+					quota.release();
+			}
 		}
 	}
 
-	private synchronized Connection getConnection2() throws SQLException {
+	private Connection getConnection2(Semaphore quota) throws SQLException {
 		if (isDisposed)
 			throw new IllegalStateException("Connection pool has been disposed.");
-		PooledConnection pconn;
-		if (!recycledConnections.isEmpty()) {
-			pconn = recycledConnections.remove();
-		} else {
-			pconn = dataSource.getPooledConnection();
-		}
-		Connection conn = pconn.getConnection();
-		activeConnections++;
-		pconn.addConnectionEventListener(poolConnectionEventListener);
+		Entry entry = null;
+		Connection conn = null;
+		while (conn == null) {
+			entry = recycledConnections.pollFirst();
+			if (entry == null)
+				break;
+			conn = reuse(entry);
+		}
+		if (conn == null) {
+			entry = new Entry(dataSource.getPooledConnection());
+			try {
+				conn = entry.pconn.getConnection();
+			} catch (SQLException e) {
+				close(entry);
+				throw e;
+			}
+		}
+		activeConnections.incrementAndGet();
+		entry.quota = quota;
+		entry.pconn.addConnectionEventListener(entry);
 		assertInnerState();
 		return conn;
 	}
 
-	private synchronized void recycleConnection(PooledConnection pconn) {
-		if (isDisposed) {
-			disposeConnection(pconn);
+	/**
+	 * get a connection from an idle entry, checking lifetime and validity
+	 * @return connection or <code>null</code> if the entry was not usable (and has been closed)
+	 */
+	private Connection reuse(Entry entry) {
+		long now = System.currentTimeMillis();
+		if (isExpired(entry, now)) {
+			close(entry);
+			return null;
+		}
+		try {
+			Connection conn = entry.pconn.getConnection();
+			long threshold = validationThreshold;
+			if (threshold >= 0 && now - entry.lastUsed > threshold
+					&& !conn.isValid(VALIDATION_TIMEOUT)) {
+				logger.debug("Closing invalid connection.");
+				close(entry);
+				return null;
+			}
+			return conn;
+		} catch (SQLException e) {
+			logger.debug("Closing broken connection: {}", e.getMessage());
+			close(entry);
+			return null;
+		}
+	}
+
+	private boolean isExpired(Entry entry, long now) {
+		long lifetime = maxLifetime;
+		return lifetime > 0 && now - entry.created > lifetime;
+	}
+
+	private void recycleConnection(Entry entry) {
+		if (isDisposed || isExpired(entry, System.currentTimeMillis())) {
+			disposeConnection(entry);
 			return;
 		}
-		if (activeConnections <= 0)
+		entry.lastUsed = System.currentTimeMillis();
+		if (activeConnections.decrementAndGet() < 0)
 			throw new AssertionError();
-		activeConnections--;
+		recycledConnections.offerFirst(entry);
 		semaphore.release();
-		recycledConnections.add(pconn);
-		assertInnerState();
+		// pool might have been disposed concurrently
+		if (isDisposed && recycledConnections.remove(entry)) {
+			close(entry);
+		}
 	}
 
-	private synchronized void disposeConnection(PooledConnection pconn) {
-		if (activeConnections <= 0)
+	private void disposeConnection(Entry entry) {
+		if (activeConnections.decrementAndGet() < 0)
 			throw new AssertionError();
-		activeConnections--;
 		semaphore.release();
+		close(entry);
+	}
+
+	private void close(Entry entry) {
 		try {
-			pconn.close();
+			entry.pconn.close();
 		} catch (Exception e) {}
-		assertInnerState();
+	}
+
+	/**
+	 * closes idle connections that have timed out or exceeded their lifetime 
+	 * (least recently used first), and opens new ones if there are less than
+	 * <code>minIdle</code> idle connections
+	 */
+	void housekeeping() {
+		try {
+			long now = System.currentTimeMillis();
+			long idleTime = idleTimeout;
+			int idle = recycledConnections.size();
+			Iterator<Entry> it = recycledConnections.descendingIterator();
+			while (it.hasNext()) {
+				Entry entry = it.next();
+				boolean timedOut = idleTime > 0 && now - entry.lastUsed > idleTime && idle > minIdle;
+				if ((timedOut || isExpired(entry, now)) && recycledConnections.remove(entry)) {
+					idle--;
+					close(entry);
+				}
+			}
+			fillIdleConnections();
+		} catch (Exception e) {
+			logger.warn("Error in connection pool housekeeping: {}", e.getMessage());
+		}
+	}
+
+	private void fillIdleConnections() throws SQLException {
+		while (!isDisposed && recycledConnections.size() < minIdle
+				&& activeConnections.get() + recycledConnections.size() < maxConnections) {
+			if (!semaphore.tryAcquire())
+				break;
+			try {
+				recycledConnections.offerLast(new Entry(dataSource.getPooledConnection()));
+			} finally {
+				semaphore.release();
+			}
+		}
 	}
 
 	private void assertInnerState() {
-		if (activeConnections < 0)
-			throw new AssertionError();
-		if (activeConnections + recycledConnections.size() > maxConnections)
-			throw new AssertionError();
-		if (activeConnections + semaphore.availablePermits() > maxConnections)
+		if (activeConnections.get() > maxConnections)
 			throw new AssertionError();
 	}
 
-	private class PoolConnectionEventListener implements ConnectionEventListener {
+	/**
+	 * @return the number of connections currently in use
+	 */
+	public int getActiveConnections() {
+		return activeConnections.get();
+	}
+
+	/**
+	 * @return the number of idle connections
+	 */
+	public int getIdleConnections() {
+		return recycledConnections.size();
+	}
+
+	public int getMaxConnections() {
+		return maxConnections;
+	}
+
+	/**
+	 * a physical connection with its timestamps, listening for the events
+	 * of its logical connection handles
+	 */
+	private class Entry implements ConnectionEventListener {
+
+		final PooledConnection pconn;
+
+		final long created = System.currentTimeMillis();
+
+		volatile long lastUsed = created;
+
+		// quota of the client currently using the connection
+		volatile Semaphore quota;
+
+		Entry(PooledConnection pconn) {
+			this.pconn = pconn;
+		}
 
 		@Override
 		public void connectionClosed(ConnectionEvent event) {
-			PooledConnection pconn = (PooledConnection) event.getSource();
 			pconn.removeConnectionEventListener(this);
-			recycleConnection(pconn);
+			releaseQuota();
+			recycleConnection(this);
 		}
 
 		@Override
 		public void connectionErrorOccurred(ConnectionEvent event) {
-			PooledConnection pconn = (PooledConnection) event.getSource();
 			pconn.removeConnectionEventListener(this);
-			disposeConnection(pconn);
+			releaseQuota();
+			disposeConnection(this);
+		}
+
+		private void releaseQuota() {
+			Semaphore q = quota;
+			quota = null;
+			if (q != null)
+				q.release();
 		}
 	}
 
@@ -0,0 +1,83 @@
+package eu.unicore.persist.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * keeps connection pools that are shared by several tables on the same database.
+ * Pools are keyed by the effective connection URL and credentials, and are
+ * reference counted, i.e. a pool is removed from the registry when the last table
+ * using it has released it.
+ *
+ * @author schuller
+ */
+public class PoolRegistry {
+
+	private final Map<String, SharedPool> pools = new ConcurrentHashMap<>();
+
+	/**
+	 * get the pool for the given key, creating it if it does not exist yet
+	 *
+	 * @param key - identifies the database (connection URL and credentials)
+	 * @param factory - creates the pool if necessary
+	 */
+	public Pool acquire(String key, Supplier<Pool> factory){
+		return pools.compute(key, (k, shared) -> {
+			if(shared==null){
+				shared = new SharedPool(factory.get());
+			}
+			shared.users++;
+			return shared;
+		}).pool;
+	}
+
+	/**
+	 * release the pool for the given key.
+	 *
+	 * @return <code>true</code> if this was the last user. The pool has then been removed
+	 *         from the registry, and should be disposed by the caller
+	 */
+	public boolean release(String key){
+		boolean[] last = new boolean[1];
+		pools.computeIfPresent(key, (k, shared) -> {
+			shared.users--;
+			last[0] = shared.users<=0;
+			return last[0] ? null : shared;
+		});
+		return last[0];
+	}
+
+	/**
+	 * get the number of tables using the pool for the given key
+	 */
+	public int getUsers(String key){
+		SharedPool shared = pools.get(key);
+		return shared!=null ? shared.users : 0;
+	}
+
+	/**
+	 * get the pool for the given key, or <code>null</code> if it does not exist
+	 */
+	public Pool get(String key){
+		SharedPool shared = pools.get(key);
+		return shared!=null ? shared.pool : null;
+	}
+
+	public int size(){
+		return pools.size();
+	}
+
+	private static class SharedPool {
+
+		final Pool pool;
+
+		// only modified within compute()
+		volatile int users;
+
+		SharedPool(Pool pool){
+			this.pool = pool;
+		}
+	}
+
+}
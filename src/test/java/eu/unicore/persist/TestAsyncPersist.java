@@ -0,0 +1,84 @@
+package eu.unicore.persist;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import eu.unicore.persist.impl.Dao1;
+import eu.unicore.persist.impl.InMemory;
+
+public class TestAsyncPersist {
+
+	private AsyncPersist<Dao1> create(String maxConcurrent, String maxPending) throws Exception {
+		PersistenceProperties p = new PersistenceProperties();
+		p.setProperty(PersistenceProperties.DB_IMPL, InMemory.class.getName());
+		p.setProperty(PersistenceProperties.DB_ASYNC_MAX_CONCURRENT, maxConcurrent);
+		p.setProperty(PersistenceProperties.DB_ASYNC_MAX_PENDING, maxPending);
+		return PersistenceFactory.get(p).getAsyncPersist(Dao1.class, null);
+	}
+
+	@Test
+	public void testBasic() throws Exception {
+		AsyncPersist<Dao1> p = create("4", "100");
+		List<CompletableFuture<Void>> writes = new ArrayList<>();
+		for(int i=0; i<10; i++){
+			Dao1 d = new Dao1();
+			d.setId(String.valueOf(i));
+			writes.add(p.write(d));
+		}
+		CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0])).get();
+		assertEquals(10, p.getRowCount().get().intValue());
+		assertEquals(10, p.getIDs().get().size());
+		assertNotNull(p.read("1").get());
+		assertNull(p.read("nosuchid").get());
+		assertEquals(2, p.readAll(Arrays.asList("1", "2", "nosuchid")).get().size());
+		p.remove("1").get();
+		assertEquals(9, p.getRowCount().get().intValue());
+		assertEquals(0, p.getPending());
+		p.shutdown();
+	}
+
+	@Test
+	public void testLimits() throws Exception {
+		AsyncPersist<Dao1> p = create("2", "5");
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		List<CompletableFuture<Object>> ops = new ArrayList<>();
+		for(int i=0; i<5; i++){
+			ops.add(p.submit(() -> {
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				release.await();
+				running.decrementAndGet();
+				return null;
+			}));
+		}
+		// too many pending operations
+		ExecutionException e = assertThrows(ExecutionException.class, ()->p.read("1").get());
+		assertInstanceOf(RejectedExecutionException.class, e.getCause());
+		release.countDown();
+		CompletableFuture.allOf(ops.toArray(new CompletableFuture<?>[0])).get();
+		assertTrue(maxRunning.get()<=2);
+		// errors are passed on
+		e = assertThrows(ExecutionException.class, ()->p.submit(() -> {
+			throw new PersistenceException("test");
+		}).get());
+		assertInstanceOf(PersistenceException.class, e.getCause());
+		p.shutdown();
+	}
+
+}
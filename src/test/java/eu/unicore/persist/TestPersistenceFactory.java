@@ -1,9 +1,16 @@
 package eu.unicore.persist;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.Test;
@@ -12,6 +19,7 @@ import eu.unicore.persist.impl.Dao1;
 import eu.unicore.persist.impl.H2Persist;
 import eu.unicore.persist.impl.InMemory;
 import eu.unicore.persist.impl.MySQLPersist;
+import eu.unicore.persist.metrics.Operation;
 import eu.unicore.util.configuration.ConfigurationException;
 
 public class TestPersistenceFactory {
@@ -56,4 +64,42 @@ public class TestPersistenceFactory {
 		});
 	}
 
+	@Test
+	public void testMetrics()throws Exception{
+		PersistenceProperties p = new PersistenceProperties();
+		p.setDatabaseDirectory("target/test_data");
+		Persist<Dao1> persist = PersistenceFactory.get(p).getPersist(Dao1.class, "metrics_test");
+		Dao1 d = new Dao1();
+		d.setId("1");
+		d.setData("test123");
+		persist.write(d);
+		persist.read("1");
+		persist.read("2");
+		persist.delete("1");
+		assertEquals(1, persist.getMetrics().getHistogram(Operation.WRITE).getCount());
+		assertEquals(2, persist.getMetrics().getHistogram(Operation.READ).getCount());
+		assertEquals(1, persist.getMetrics().getHistogram(Operation.DELETE).getCount());
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = persist.getMetrics().getObjectName();
+		assertTrue(server.isRegistered(name));
+		assertEquals("metrics_test", server.getAttribute(name, "Table"));
+		assertEquals(1l, server.getAttribute(name, "RowsWritten"));
+		assertTrue((Long)server.getAttribute(name, "BytesWritten")>0);
+		server.invoke(name, "reset", null, null);
+		assertEquals(0l, server.getAttribute(name, "RowsWritten"));
+		assertEquals(0l, persist.getMetrics().getHistogram(Operation.WRITE).getCount());
+		// a second instance for the same table gets its own MBean
+		Persist<Dao1> persist2 = PersistenceFactory.get(p).getPersist(Dao1.class, "metrics_test");
+		ObjectName name2 = persist2.getMetrics().getObjectName();
+		assertNotEquals(name, name2);
+		assertTrue(server.isRegistered(name));
+		assertTrue(server.isRegistered(name2));
+		persist.purge();
+		persist2.shutdown();
+		assertFalse(server.isRegistered(name2));
+		assertTrue(server.isRegistered(name));
+		persist.shutdown();
+		assertFalse(server.isRegistered(name));
+	}
+
 }
@@ -12,7 +12,7 @@ public class Dao1 implements Serializable{
 
 	private String data;
 	
-	@Column(name="other")
+	@Column(name="other", indexed=true)
 	private String other="";
 	
 	@ID
@@ -0,0 +1,34 @@
+package eu.unicore.persist.impl;
+
+import java.io.Serializable;
+
+import eu.unicore.persist.annotations.ID;
+import eu.unicore.persist.annotations.Immutable;
+
+@Immutable
+public class Dao6 implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	@ID
+	private String id;
+
+	private Integer data;
+
+	public Integer getData() {
+		return data;
+	}
+
+	public void setData(Integer data) {
+		this.data = data;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+}
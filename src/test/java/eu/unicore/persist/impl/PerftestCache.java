@@ -0,0 +1,82 @@
+package eu.unicore.persist.impl;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import eu.unicore.persist.PersistenceProperties;
+
+/**
+ * measures the cost of a cache hit: copying the cached instance (as done previously),
+ * decoding the cached data (JSON and binary), and returning a shared immutable instance
+ */
+public class PerftestCache {
+
+	private static final int ITERATIONS = 200000;
+
+	private final Random rand = new Random();
+
+	@Test
+	public void perfTestCacheHits() throws Exception {
+		for(int size: new int[]{100, 5000}) {
+			System.out.println("\n**** data_size="+size);
+			InMemory<Dao1> json = create(Dao1.class, "json");
+			InMemory<Dao1> binary = create(Dao1.class, "binary");
+			Dao1 d = new Dao1();
+			d.setId("1");
+			d.setData(randomString(size));
+			json.write(d);
+			binary.write(d);
+			Dao1 cached = json.read("1");
+			run("copy on hit (previous) ", () -> json.copy(cached));
+			run("decode on hit (JSON)   ", () -> json.read("1"));
+			run("decode on hit (binary) ", () -> binary.read("1"));
+		}
+		InMemory<Dao6> immutable = create(Dao6.class, "json");
+		Dao6 d = new Dao6();
+		d.setId("1");
+		d.setData(1);
+		immutable.write(d);
+		System.out.println("\n**** immutable");
+		run("shared instance        ", () -> immutable.read("1"));
+	}
+
+	private <T> InMemory<T> create(Class<T> daoClass, String marshaller) throws Exception {
+		InMemory<T> p = new InMemory<>(daoClass, null);
+		PersistenceProperties props = new PersistenceProperties();
+		props.setProperty(PersistenceProperties.DB_MARSHALLER, marshaller);
+		p.setConfigSource(props);
+		p.setCaching(true);
+		p.init();
+		return p;
+	}
+
+	private interface Action {
+		Object run() throws Exception;
+	}
+
+	private void run(String name, Action action) throws Exception {
+		for(int i=0; i<ITERATIONS/10; i++) {
+			action.run();
+		}
+		Object result = null;
+		long start = System.nanoTime();
+		for(int i=0; i<ITERATIONS; i++) {
+			result = action.run();
+		}
+		long time = System.nanoTime()-start;
+		assertNotNull(result);
+		System.out.println(String.format("%s: %d ns/read", name, time/ITERATIONS));
+	}
+
+	private String randomString(int length) {
+		StringBuilder sb = new StringBuilder(length);
+		for(int i=0; i<length; i++) {
+			sb.append((char)('a'+rand.nextInt(26)));
+		}
+		return sb.toString();
+	}
+
+}
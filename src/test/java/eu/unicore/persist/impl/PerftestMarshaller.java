@@ -0,0 +1,85 @@
+package eu.unicore.persist.impl;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.util.Random;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+
+import eu.unicore.persist.ObjectMarshaller;
+
+/**
+ * compares encoding / decoding time and size of the stored data
+ * for the JSON and binary marshallers
+ */
+public class PerftestMarshaller {
+
+	private static final int ITERATIONS = 200000;
+
+	private final Random rand = new Random();
+
+	@Test
+	public void perfTestJSONvsBinary() throws Exception {
+		for(int size: new int[]{10, 1000, 10000}) {
+			compare("Dao1 data_size="+size, Dao1.class, () -> {
+				Dao1 d = new Dao1();
+				d.setId(String.valueOf(rand.nextInt()));
+				d.setData(randomString(size));
+				d.setOther("other");
+				return d;
+			});
+		}
+		compare("Dao3", Dao3.class, () -> {
+			Dao3 d = new Dao3();
+			d.setId(String.valueOf(rand.nextInt()));
+			d.setData(rand.nextInt());
+			return d;
+		});
+		compare("Dao5", Dao5.class, () -> {
+			Dao5 d = new Dao5();
+			d.setId(String.valueOf(rand.nextInt()));
+			d.setData(new TestPersistImplementations.M1(rand.nextInt()));
+			return d;
+		});
+	}
+
+	private <T> void compare(String name, Class<T> daoClass, Supplier<T> factory) {
+		System.out.println("\n**** "+name);
+		T dao = factory.get();
+		run("JSON  ", new JSONMarshaller<>(daoClass), dao);
+		run("Binary", new BinaryMarshaller<>(daoClass), dao);
+	}
+
+	private <T> void run(String name, ObjectMarshaller<T> m, T dao) {
+		int iterations = ITERATIONS;
+		// warm-up
+		for(int i=0; i<iterations/10; i++) {
+			m.deserialize(m.serialize(dao));
+		}
+		byte[] data = null;
+		long start = System.nanoTime();
+		for(int i=0; i<iterations; i++) {
+			data = m.serialize(dao);
+		}
+		long encode = System.nanoTime()-start;
+		T result = null;
+		start = System.nanoTime();
+		for(int i=0; i<iterations; i++) {
+			result = m.deserialize(data);
+		}
+		long decode = System.nanoTime()-start;
+		assertNotNull(result);
+		System.out.println(String.format("%s: size=%d bytes, encode=%d ns, decode=%d ns",
+				name, data.length, encode/iterations, decode/iterations));
+	}
+
+	private String randomString(int length) {
+		StringBuilder sb = new StringBuilder(length);
+		for(int i=0; i<length; i++) {
+			sb.append((char)('a'+rand.nextInt(26)));
+		}
+		return sb.toString();
+	}
+
+}
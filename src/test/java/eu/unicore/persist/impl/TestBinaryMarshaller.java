@@ -0,0 +1,118 @@
+package eu.unicore.persist.impl;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import eu.unicore.persist.DataVersionException;
+
+public class TestBinaryMarshaller {
+
+	@Test
+	public void testRoundTrip() {
+		BinaryMarshaller<Dao1> m = new BinaryMarshaller<>(Dao1.class);
+		assertTrue(m.isBinary());
+		Dao1 d = new Dao1();
+		d.setId("1");
+		d.setData("some data \u00e4\u00f6\u00fc");
+		Dao1 d2 = m.deserialize(m.serialize(d));
+		assertEquals("1", d2.getId());
+		assertEquals("some data \u00e4\u00f6\u00fc", d2.getData());
+		assertEquals("", d2.getOther());
+		d2 = m.decode(m.encode(d));
+		assertEquals("some data \u00e4\u00f6\u00fc", d2.getData());
+		// nulls are kept, not replaced by the field initialiser
+		d.setOther(null);
+		assertNull(m.deserialize(m.serialize(d)).getOther());
+		// more compact than JSON
+		assertTrue(m.serialize(d).length < new JSONMarshaller<>(Dao1.class).serialize(d).length);
+	}
+
+	@Test
+	public void testAllTypes() {
+		BinaryMarshaller<AllTypes> m = new BinaryMarshaller<>(AllTypes.class);
+		AllTypes a = new AllTypes();
+		a.i = -123456;
+		a.l = Long.MIN_VALUE;
+		a.d = 3.14;
+		a.f = -1.5f;
+		a.b = true;
+		a.s = 300;
+		a.by = -7;
+		a.c = 'x';
+		a.boxed = 42;
+		a.bytes = new byte[]{1, 2, 3};
+		a.type = Type.TWO;
+		a.list.add("a");
+		a.map.put("k", 1);
+		AllTypes a2 = m.deserialize(m.serialize(a));
+		assertEquals(a.i, a2.i);
+		assertEquals(a.l, a2.l);
+		assertEquals(a.d, a2.d);
+		assertEquals(a.f, a2.f);
+		assertEquals(a.b, a2.b);
+		assertEquals(a.s, a2.s);
+		assertEquals(a.by, a2.by);
+		assertEquals(a.c, a2.c);
+		assertEquals(a.boxed, a2.boxed);
+		assertNull(a2.boxedNull);
+		assertArrayEquals(a.bytes, a2.bytes);
+		assertEquals(Type.TWO, a2.type);
+		assertEquals(a.list, a2.list);
+		assertEquals(a.map, a2.map);
+		assertEquals("super", a2.inherited);
+	}
+
+	@Test
+	public void testCustomConverters() {
+		BinaryMarshaller<Dao5> m = new BinaryMarshaller<>(Dao5.class);
+		Dao5 d = new Dao5();
+		d.setId("1");
+		d.setData(new TestPersistImplementations.M1(123));
+		Dao5 d2 = m.deserialize(m.serialize(d));
+		assertEquals("1", d2.getId());
+		assertEquals(123, ((TestPersistImplementations.M1)d2.getData()).getData());
+	}
+
+	@Test
+	public void testIncompatibleData() {
+		byte[] data = new BinaryMarshaller<>(Dao1.class).serialize(new Dao1());
+		BinaryMarshaller<Dao2> m = new BinaryMarshaller<>(Dao2.class);
+		IllegalStateException e = assertThrows(IllegalStateException.class, ()->m.deserialize(data));
+		assertInstanceOf(DataVersionException.class, e.getCause());
+	}
+
+	public static enum Type { ONE, TWO }
+
+	public static class Base {
+		String inherited = "super";
+	}
+
+	public static class AllTypes extends Base {
+		static int ignored = 1;
+		int i;
+		long l;
+		double d;
+		float f;
+		boolean b;
+		short s;
+		byte by;
+		char c;
+		Integer boxed;
+		Integer boxedNull;
+		byte[] bytes;
+		Type type;
+		List<String> list = new ArrayList<>();
+		Map<String,Integer> map = new HashMap<>();
+	}
+}
@@ -0,0 +1,119 @@
+package eu.unicore.persist.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+
+import eu.unicore.persist.PersistenceException;
+import eu.unicore.persist.PersistenceProperties;
+
+public class TestCacheWarmup {
+
+	private InMemory<Dao1> create(PersistenceProperties cf) throws Exception {
+		return create(cf, new ConcurrentLinkedQueue<>());
+	}
+
+	/**
+	 * @param duringLoad - actions to run (once) after entities have been read, but
+	 *        before they are put into the cache
+	 */
+	private InMemory<Dao1> create(PersistenceProperties cf, Queue<Callable<?>> duringLoad) throws Exception {
+		InMemory<Dao1> p = new InMemory<>(Dao1.class, "warmup") {
+			@Override
+			protected Map<String,Dao1> _readAll(List<String> ids) throws PersistenceException {
+				Map<String,Dao1> result = super._readAll(ids);
+				Callable<?> action;
+				while((action = duringLoad.poll())!=null){
+					try{
+						action.call();
+					}catch(Exception e){
+						throw new PersistenceException(e);
+					}
+				}
+				return result;
+			}
+		};
+		p.setConfigSource(cf);
+		p.setCaching(true);
+		p.init();
+		for(int i=0; i<20; i++){
+			Dao1 d = new Dao1();
+			d.setId(String.valueOf(i));
+			p.write(d);
+		}
+		// start over with an empty cache
+		p.initCache();
+		return p;
+	}
+
+	@Test
+	public void testWarmupNewest() throws Exception {
+		PersistenceProperties cf = new PersistenceProperties();
+		cf.setProperty(PersistenceProperties.DB_CACHE_MAX_SIZE, "100");
+		cf.setProperty(PersistenceProperties.DB_CACHE_WARMUP_SIZE, "5");
+		InMemory<Dao1> p = create(cf);
+		p.startCacheWarmup();
+		assertEquals(5, p.getCacheWarmup().get().intValue());
+		for(int i=15; i<20; i++){
+			p.read(String.valueOf(i));
+		}
+		assertEquals(5, p.getCacheStatistics().getHits());
+		assertEquals(0, p.getCacheStatistics().getLoads());
+		p.read("0");
+		assertEquals(1, p.getCacheStatistics().getLoads());
+	}
+
+	@Test
+	public void testDeleteDuringWarmup() throws Exception {
+		PersistenceProperties cf = new PersistenceProperties();
+		cf.setProperty(PersistenceProperties.DB_CACHE_MAX_SIZE, "100");
+		cf.setProperty(PersistenceProperties.DB_CACHE_WARMUP_SIZE, "5");
+		Queue<Callable<?>> duringLoad = new ConcurrentLinkedQueue<>();
+		InMemory<Dao1> p = create(cf, duringLoad);
+		duringLoad.add(() -> { p.delete("17"); return null; });
+		p.startCacheWarmup();
+		assertEquals(4, p.getCacheWarmup().get().intValue());
+		assertNull(p.read("17"));
+		assertEquals(1, p.getCacheStatistics().getLoads());
+
+		duringLoad.add(() -> { p.removeAll(); return null; });
+		p.initCache();
+		p.startCacheWarmup();
+		assertEquals(0, p.getCacheWarmup().get().intValue());
+		assertEquals(0, p.getCacheStatistics().getSize());
+		assertNull(p.read("19"));
+	}
+
+	@Test
+	public void testWarmupHotIDs() throws Exception {
+		File dir = new File("target/test_data_warmup");
+		FileUtils.deleteQuietly(dir);
+		PersistenceProperties cf = new PersistenceProperties();
+		cf.setProperty(PersistenceProperties.DB_CACHE_MAX_SIZE, "100");
+		cf.setProperty(PersistenceProperties.DB_CACHE_WARMUP_DIRECTORY, dir.getPath());
+		InMemory<Dao1> p = create(cf);
+		p.startCacheWarmup();
+		assertEquals(0, p.getCacheWarmup().get().intValue());
+		p.read("3");
+		p.read("7");
+		p.saveHotIDs();
+		assertTrue(new File(dir, "warmup.ids").exists());
+		p.initCache();
+		p.startCacheWarmup();
+		assertEquals(2, p.getCacheWarmup().get().intValue());
+		p.read("3");
+		p.read("7");
+		assertEquals(2, p.getCacheStatistics().getHits());
+	}
+
+}
@@ -1,7 +1,9 @@
 package eu.unicore.persist.impl;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.lang.reflect.Method;
 import java.util.List;
@@ -33,6 +35,10 @@ public class TestClassScanner {
 		assertEquals(1, list.size());
 		ColumnDescriptor cd=list.get(0);
 		assertEquals("foo", cd.getColumn());
+		assertFalse(cd.isIndexed());
+		cd = ClassScanner.getColumns(Dao1.class).get(0);
+		assertEquals("other", cd.getColumn());
+		assertTrue(cd.isIndexed());
 	}
 
 	@Test
@@ -0,0 +1,90 @@
+package eu.unicore.persist.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import eu.unicore.persist.ObjectMarshaller;
+
+public class TestCompressingMarshaller {
+
+	private Dao1 createDao(int size) {
+		Dao1 d = new Dao1();
+		d.setId("1");
+		StringBuilder sb = new StringBuilder();
+		for(int i=0; i<size; i++) {
+			sb.append("line ").append(i % 10).append(' ');
+		}
+		d.setData(sb.toString());
+		return d;
+	}
+
+	@Test
+	public void testStrings() {
+		JSONMarshaller<Dao1> json = new JSONMarshaller<>(Dao1.class);
+		ObjectMarshaller<Dao1> m = new CompressingMarshaller<>(json, 1024);
+		assertFalse(m.isBinary());
+		// small data is not compressed
+		Dao1 small = createDao(10);
+		assertEquals(json.encode(small), m.encode(small));
+		// large data is compressed
+		Dao1 large = createDao(1000);
+		String encoded = m.encode(large);
+		assertTrue(encoded.startsWith("~"));
+		assertTrue(encoded.length() < json.encode(large).length()/4);
+		assertEquals(large.getData(), m.decode(encoded).getData());
+		// uncompressed data can be read
+		assertEquals(large.getData(), m.decode(json.encode(large)).getData());
+	}
+
+	@Test
+	public void testBinary() {
+		BinaryMarshaller<Dao1> binary = new BinaryMarshaller<>(Dao1.class);
+		ObjectMarshaller<Dao1> m = new CompressingMarshaller<>(binary, 1024);
+		assertTrue(m.isBinary());
+		Dao1 small = createDao(10);
+		assertEquals(binary.serialize(small).length, m.serialize(small).length);
+		Dao1 large = createDao(1000);
+		byte[] data = m.serialize(large);
+		assertEquals(0, data[0]);
+		assertTrue(data.length < binary.serialize(large).length/4);
+		assertEquals(large.getData(), m.deserialize(data).getData());
+		// uncompressed data can be read
+		assertEquals(large.getData(), m.deserialize(binary.serialize(large)).getData());
+	}
+
+	@Test
+	public void testThresholdInBytes() {
+		JSONMarshaller<Dao1> json = new JSONMarshaller<>(Dao1.class);
+		Dao1 d = new Dao1();
+		d.setId("1");
+		d.setData("\u00e4\u00f6\u00fc".repeat(200));
+		String plain = json.encode(d);
+		int bytes = plain.getBytes(StandardCharsets.UTF_8).length;
+		assertTrue(plain.length() < bytes);
+		// fewer characters than the threshold, but more bytes
+		ObjectMarshaller<Dao1> m = new CompressingMarshaller<>(json, plain.length()+1);
+		String encoded = m.encode(d);
+		assertTrue(encoded.startsWith("~"));
+		assertEquals(d.getData(), m.decode(encoded).getData());
+		m = new CompressingMarshaller<>(json, bytes+1);
+		assertEquals(plain, m.encode(d));
+	}
+
+	@Test
+	public void testCorruptLength() {
+		byte[] data = CompressingMarshaller.compress(new byte[100]);
+		// length in the header way larger than possible
+		data[1] = 0x7f;
+		assertThrows(IllegalStateException.class, () -> CompressingMarshaller.decompress(data));
+		data[1] = (byte)0xff;
+		assertThrows(IllegalStateException.class, () -> CompressingMarshaller.decompress(data));
+		assertThrows(IllegalStateException.class, () -> CompressingMarshaller.decompress(new byte[3]));
+	}
+
+}
@@ -2,6 +2,7 @@ package eu.unicore.persist.impl;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.junit.jupiter.api.Test;
 
@@ -21,7 +22,10 @@ public class TestDBImpls {
 		p.setConfigSource(cf);
 		System.out.println(p.getSQLCreateTable());
 		assertEquals("LONGTEXT", p.getSQLStringType());
-		System.out.println(p.getSQLDelete("1234"));
+		System.out.println(p.getSQLDelete());
+		assertTrue(p.getSQLDelete().endsWith("WHERE id=? ;"));
+		System.out.println(p.getSQLUpsert());
+		assertTrue(p.getSQLUpsert().contains("ON DUPLICATE KEY UPDATE data=VALUES(data),other=VALUES(other)"));
 		assertEquals(3306, p.getDefaultPort());
 		Class.forName(p.getDefaultDriverName());
 		assertNotNull(p.getConnectionPoolDataSource());
@@ -38,8 +42,13 @@ public class TestDBImpls {
 		};
 		p.setConfigSource(cf);
 		System.out.println(p.getSQLCreateTable());
+		assertTrue(p.getSQLCreateTable().contains("CREATE INDEX IF NOT EXISTS Dao1_other_idx ON Dao1 (other)"));
+		assertTrue(p.getSQLCreateTable().contains("CREATE INDEX IF NOT EXISTS Dao1_CREATED_idx ON Dao1 (CREATED)"));
 		assertEquals("TEXT", p.getSQLStringType());
-		System.out.println(p.getSQLDelete("1234"));
+		System.out.println(p.getSQLDelete());
+		assertTrue(p.getSQLDelete().endsWith("WHERE id=? ;"));
+		System.out.println(p.getSQLUpsert());
+		assertTrue(p.getSQLUpsert().contains("ON CONFLICT (id) DO UPDATE SET data=EXCLUDED.data,other=EXCLUDED.other"));
 		assertEquals(5432, p.getDefaultPort());
 		Class.forName(p.getDefaultDriverName());
 		assertNotNull(p.getConnectionPoolDataSource());
@@ -2,6 +2,8 @@ package eu.unicore.persist.impl;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -71,4 +73,31 @@ public class TestDataIntegrity {
 		}	
 	}
 
+	@Test
+	public void testImmutable()throws Exception{
+		Persist<Dao6> p6 = new H2Persist<Dao6>(Dao6.class, null);
+		PersistenceProperties props = new PersistenceProperties();
+		props.setDatabaseDirectory("target/test_data");
+		p6.setConfigSource(props);
+		p6.setCaching(true);
+		p6.init();
+		p6.removeAll();
+		Dao6 test = new Dao6();
+		test.setId("1");
+		test.setData(0);
+		p6.write(test);
+		// readers share the cached instance
+		Dao6 shared = p6.read("1");
+		assertSame(shared, p6.read("1"));
+		// but get a private copy for updating
+		Dao6 orig = p6.getForUpdate("1");
+		assertNotSame(shared, orig);
+		orig.setData(1);
+		assertEquals(0, p6.read("1").getData().intValue());
+		p6.write(orig);
+		assertEquals(1, p6.read("1").getData().intValue());
+		p6.removeAll();
+		p6.shutdown();
+	}
+
 }
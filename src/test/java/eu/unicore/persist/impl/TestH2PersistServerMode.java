@@ -60,6 +60,7 @@ public class TestH2PersistServerMode {
 		
 		assertTrue(p.connectionURL.contains("tcp"));
 		assertTrue(p.connectionURL.contains("AUTO_RECONNECT=TRUE"));
+		assertTrue(p.connectionURL.contains("QUERY_CACHE_SIZE=64"));
 		
 		p.removeAll();
 		System.out.println("Init took: "+(System.currentTimeMillis()-start)+" ms.");
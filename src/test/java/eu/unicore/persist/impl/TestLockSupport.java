@@ -0,0 +1,185 @@
+package eu.unicore.persist.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class TestLockSupport {
+
+	@ParameterizedTest
+	@ValueSource(ints = {0, 16})
+	public void testLocking(int stripes) throws Exception {
+		LockSupport ls = new LockSupport("test", stripes);
+		Lock l = ls.getOrCreateLock("1");
+		assertTrue(l.tryLock());
+		assertSame(l, ls.getLockIfExists("1"));
+		assertEquals(1, ls.getNumberOfHeldLocks());
+		// reentrant
+		assertTrue(ls.getOrCreateLock("1").tryLock());
+		ls.getLockIfExists("1").unlock();
+		assertEquals(1, ls.getNumberOfHeldLocks());
+
+		AtomicBoolean canLock = new AtomicBoolean(true);
+		Thread t = new Thread(() -> canLock.set(ls.getOrCreateLock("1").tryLock()));
+		t.start();
+		t.join();
+		assertFalse(canLock.get());
+
+		l.unlock();
+		assertEquals(0, ls.getNumberOfHeldLocks());
+		t = new Thread(() -> {
+			Lock l2 = ls.getOrCreateLock("1");
+			canLock.set(l2.tryLock());
+			l2.unlock();
+		});
+		t.start();
+		t.join();
+		assertTrue(canLock.get());
+		if(stripes>0){
+			assertNull(ls.getLockIfExists("1"));
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {0, 4})
+	public void testConcurrency(int stripes) throws Exception {
+		LockSupport ls = new LockSupport("test", stripes);
+		int[] counters = new int[8];
+		AtomicInteger errors = new AtomicInteger();
+		Thread[] threads = new Thread[16];
+		for(int i=0; i<threads.length; i++){
+			threads[i] = new Thread(() -> {
+				for(int j=0; j<10000; j++){
+					int n = j % counters.length;
+					Lock l = ls.getOrCreateLock(String.valueOf(n));
+					l.lock();
+					try{
+						counters[n]++;
+					}catch(Exception e){
+						errors.incrementAndGet();
+					}
+					finally{
+						l.unlock();
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for(Thread t: threads)t.join();
+		assertEquals(0, errors.get());
+		for(int c: counters){
+			assertEquals(threads.length*10000/counters.length, c);
+		}
+		assertEquals(0, ls.getNumberOfHeldLocks());
+	}
+
+	@Test
+	public void testDistributedLocks() throws Exception {
+		// simulate two nodes sharing the same distributed locks
+		Set<String> shared = ConcurrentHashMap.newKeySet();
+		AtomicInteger attempts = new AtomicInteger();
+		DistributedLockProvider provider = new DistributedLockProvider() {
+			public boolean tryAcquire(String id) {
+				attempts.incrementAndGet();
+				return shared.add(id);
+			}
+			public void release(String id) {
+				shared.remove(id);
+			}
+		};
+		LockSupport node1 = new LockSupport("test");
+		node1.setDistributedLockProvider(provider);
+		LockSupport node2 = new LockSupport("test");
+		node2.setDistributedLockProvider(provider);
+
+		Lock l1 = node1.getOrCreateLock("1");
+		assertTrue(l1.tryLock());
+		assertTrue(shared.contains("1"));
+		// re-entrant locking does not contact the provider again
+		assertTrue(l1.tryLock(1, TimeUnit.SECONDS));
+		assertEquals(1, attempts.get());
+		l1.unlock();
+		assertTrue(shared.contains("1"));
+
+		AtomicBoolean canLock = new AtomicBoolean(true);
+		Thread t = new Thread(() -> {
+			try{
+				canLock.set(node2.getOrCreateLock("1").tryLock(200, TimeUnit.MILLISECONDS));
+			}catch(InterruptedException ie){}
+		});
+		t.start();
+		t.join();
+		assertFalse(canLock.get());
+		// local lock of node2 must have been released again
+		assertEquals(0, node2.getNumberOfHeldLocks());
+
+		l1.unlock();
+		assertFalse(shared.contains("1"));
+		Lock l2 = node2.getOrCreateLock("1");
+		assertTrue(l2.tryLock(200, TimeUnit.MILLISECONDS));
+		assertFalse(l1.tryLock());
+		l2.unlock();
+		assertTrue(shared.isEmpty());
+	}
+
+	@Test
+	public void testLostDistributedLocks() throws Exception {
+		Set<String> shared = ConcurrentHashMap.newKeySet();
+		DistributedLockProvider provider = new DistributedLockProvider() {
+			public boolean tryAcquire(String id) {
+				return shared.add(id);
+			}
+			public void release(String id) {
+				shared.remove(id);
+			}
+			public boolean isHeld(String id) {
+				return shared.contains(id);
+			}
+			public void releaseAll() {
+				shared.clear();
+			}
+		};
+		LockSupport ls = new LockSupport("test");
+		ls.setDistributedLockProvider(provider);
+		Lock l = ls.getOrCreateLock("1");
+		assertTrue(l.tryLock());
+		ls.checkDistributedLock("1");
+		// lease taken over by someone else
+		shared.remove("1");
+		assertThrows(IllegalStateException.class, ()->ls.checkDistributedLock("1"));
+		l.unlock();
+		assertTrue(ls.getOrCreateLock("2").tryLock());
+		assertTrue(ls.getOrCreateLock("3").tryLock());
+		assertEquals(2, shared.size());
+		ls.cleanup();
+		assertTrue(shared.isEmpty());
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {0, 4})
+	public void testCleanup(int stripes) throws Exception {
+		LockSupport ls = new LockSupport("test", stripes);
+		Lock l = ls.getOrCreateLock("1");
+		l.lock();
+		assertNotNull(ls.getLockIfExists("1"));
+		assertTrue(ls.cleanup("1"));
+		assertEquals(0, ls.getNumberOfHeldLocks());
+		assertFalse(ls.cleanup("1"));
+	}
+
+}
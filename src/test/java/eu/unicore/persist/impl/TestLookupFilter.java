@@ -0,0 +1,152 @@
+package eu.unicore.persist.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import eu.unicore.persist.PersistenceProperties;
+
+public class TestLookupFilter {
+
+	@Test
+	public void testNegativeCache() throws Exception {
+		LookupFilter f = new LookupFilter("test", 60, 100, null, 0);
+		f.init();
+		assertFalse(f.isMissing("1"));
+		f.notFound("1", f.generation());
+		assertTrue(f.isMissing("1"));
+		f.added("1");
+		assertFalse(f.isMissing("1"));
+		f.removed("1", f.generation());
+		assertTrue(f.isMissing("1"));
+		f.clear(() -> {});
+		assertFalse(f.isMissing("1"));
+		// not remembered if a write started since the lookup began
+		long generation = f.generation();
+		f.added("2");
+		f.notFound("2", generation);
+		assertFalse(f.isMissing("2"));
+	}
+
+	@Test
+	public void testBloomFilter() throws Exception {
+		List<String> ids = new ArrayList<>(Arrays.asList("1", "2", "3"));
+		LookupFilter f = new LookupFilter("test", 0, 0, () -> ids, 10);
+		f.init();
+		assertFalse(f.isMissing("1"));
+		assertTrue(f.isMissing("4"));
+		f.added("4");
+		assertFalse(f.isMissing("4"));
+		// removed IDs are not known to be missing until the filter is re-built
+		ids.remove("1");
+		f.removed("1", f.generation());
+		f.rebuild();
+		assertTrue(f.isMissing("1"));
+		// grows if there are more IDs than expected
+		for(int i=0; i<1000; i++){
+			ids.add("id"+i);
+		}
+		f.rebuild();
+		for(String id: ids){
+			assertFalse(f.isMissing(id));
+		}
+		f.clear(() -> ids.clear());
+		assertTrue(f.isMissing("2"));
+		// IDs written while removing all entities are kept
+		f.clear(() -> {
+			ids.clear();
+			ids.add("5");
+			f.added("5");
+		});
+		assertFalse(f.isMissing("5"));
+	}
+
+	@Test
+	public void testConcurrentRebuild() throws Exception {
+		List<String> ids = new CopyOnWriteArrayList<>();
+		AtomicInteger active = new AtomicInteger();
+		AtomicInteger maxActive = new AtomicInteger();
+		CountDownLatch restarted = new CountDownLatch(1);
+		CountDownLatch blocked = new CountDownLatch(1);
+		LookupFilter f = new LookupFilter("test", 60, 1000, () -> {
+			maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+			restarted.countDown();
+			blocked.await(10, TimeUnit.SECONDS);
+			List<String> result = new ArrayList<>(ids);
+			active.decrementAndGet();
+			return result;
+		}, 100);
+		ExecutorService es = Executors.newFixedThreadPool(4);
+		try{
+			Future<?> r1 = es.submit(() -> { f.rebuild(); return null; });
+			assertTrue(restarted.await(10, TimeUnit.SECONDS));
+			// second rebuild and clear() must wait for the running rebuild
+			Future<?> r2 = es.submit(() -> { f.rebuild(); return null; });
+			Future<?> c = es.submit(() -> { f.clear(() -> ids.clear()); return null; });
+			// written while the rebuild is running
+			ids.add("1");
+			f.added("1");
+			blocked.countDown();
+			r1.get(10, TimeUnit.SECONDS);
+			r2.get(10, TimeUnit.SECONDS);
+			c.get(10, TimeUnit.SECONDS);
+			assertEquals(1, maxActive.get());
+			for(String id: ids){
+				assertFalse(f.isMissing(id));
+			}
+			// written concurrently with lookups that do not find it
+			LookupFilter negative = new LookupFilter("test", 60, 1000, null, 0);
+			for(int i=0; i<1000; i++){
+				String id = "x"+i;
+				long generation = negative.generation();
+				Future<?> w = es.submit(() -> negative.added(id));
+				negative.notFound(id, generation);
+				w.get(10, TimeUnit.SECONDS);
+				assertFalse(negative.isMissing(id));
+			}
+		}finally{
+			es.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testReadMissing() throws Exception {
+		InMemory<Dao1> p = new InMemory<>(Dao1.class, null);
+		PersistenceProperties cf = new PersistenceProperties();
+		cf.setProperty(PersistenceProperties.DB_NEGATIVE_CACHE_TTL, "60");
+		cf.setProperty(PersistenceProperties.DB_BLOOM_FILTER_ENABLE, "true");
+		p.setConfigSource(cf);
+		p.init();
+		Dao1 d = new Dao1();
+		d.setId("1");
+		p.write(d);
+		for(int i=0; i<10; i++){
+			assertNull(p.read("2"));
+			assertNotNull(p.read("1"));
+		}
+		// existing entity is cached, and the missing one is never read from storage
+		assertEquals(0, p.getCacheStatistics().getLoads());
+		p.delete("1");
+		assertNull(p.read("1"));
+		assertEquals(0, p.getCacheStatistics().getLoads());
+		p.write(d);
+		assertNotNull(p.read("1"));
+		assertEquals(1, p.readAll(Arrays.asList("1", "2")).size());
+	}
+
+}
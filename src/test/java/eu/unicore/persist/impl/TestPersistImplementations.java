@@ -2,11 +2,19 @@ package eu.unicore.persist.impl;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -14,7 +22,10 @@ import org.junit.jupiter.params.provider.ValueSource;
 
 import com.google.gson.JsonParseException;
 
+import eu.unicore.persist.CacheStatistics;
+import eu.unicore.persist.PersistenceFactory;
 import eu.unicore.persist.PersistenceProperties;
+import eu.unicore.persist.util.PoolRegistry;
 import eu.unicore.persist.util.Wrapper;
 
 
@@ -34,6 +45,257 @@ public class TestPersistImplementations {
 		new Tester(persistClass, cf).run();
 	}
 	
+	@ParameterizedTest
+	@ValueSource(classes = {H2Persist.class, InMemory.class})
+	public void testBinaryMarshaller(Class<?>persistClass) throws Exception {
+		PersistenceProperties cf=new PersistenceProperties();
+		cf.setDatabaseDirectory("./target/test_data_binary");
+		cf.setProperty(PersistenceProperties.DB_MARSHALLER, "binary");
+		new Tester(persistClass, cf).run();
+	}
+
+	@ParameterizedTest
+	@ValueSource(classes = {H2Persist.class, InMemory.class})
+	public void testCacheConfiguration(Class<?>persistClass) throws Exception {
+		PersistenceProperties cf=new PersistenceProperties();
+		cf.setDatabaseDirectory("./target/test_data");
+		cf.setProperty(PersistenceProperties.DB_CACHE_MAX_WEIGHT, String.valueOf(1024*1024));
+		cf.setProperty(PersistenceProperties.DB_CACHE_EXPIRE_AFTER_ACCESS, "0");
+		cf.setProperty(PersistenceProperties.DB_CACHE_REFRESH_AFTER_WRITE, "60");
+		new Tester(persistClass, cf).run();
+	}
+
+	@ParameterizedTest
+	@ValueSource(classes = {H2Persist.class, InMemory.class})
+	public void testLookupFilter(Class<?>persistClass) throws Exception {
+		PersistenceProperties cf=new PersistenceProperties();
+		cf.setDatabaseDirectory("./target/test_data");
+		cf.setProperty(PersistenceProperties.DB_NEGATIVE_CACHE_TTL, "60");
+		cf.setProperty(PersistenceProperties.DB_BLOOM_FILTER_ENABLE, "true");
+		new Tester(persistClass, cf).run();
+	}
+
+	@Test
+	public void testCacheStatistics() throws Exception {
+		InMemory<Dao1> p = new InMemory<>(Dao1.class, null);
+		p.setCaching(true);
+		p.init();
+		assertEquals(0, p.getCacheStatistics().getRequests());
+		Dao1 d = new Dao1();
+		d.setId("1");
+		d.setData("test123");
+		p.write(d);
+		for(int i=0; i<10; i++){
+			p.read("1");
+		}
+		p.read("2");
+		CacheStatistics stats = p.getCacheStatistics();
+		assertEquals(10, stats.getHits());
+		assertEquals(1, stats.getMisses());
+		assertEquals(1, stats.getLoads());
+		assertEquals(10, p.getCacheHits());
+		assertEquals(1, stats.getSize());
+		// size in bytes is only tracked if the cache is bounded by weight
+		assertEquals(-1, stats.getEstimatedBytes());
+		assertEquals(10.0/11, stats.getHitRatio(), 0.001);
+
+		PersistenceProperties cf = new PersistenceProperties();
+		cf.setProperty(PersistenceProperties.DB_CACHE_MAX_WEIGHT, "1000000");
+		InMemory<Dao1> p2 = new InMemory<>(Dao1.class, null);
+		p2.setConfigSource(cf);
+		p2.setCaching(true);
+		p2.init();
+		p2.write(d);
+		assertTrue(p2.getCacheStatistics().getEstimatedBytes()>0);
+	}
+
+	@Test
+	public void testSharedPool() throws Exception {
+		PersistenceProperties cf = new PersistenceProperties();
+		cf.setDatabaseDirectory("./target/test_data");
+		cf.setProperty(PersistenceProperties.DB_DATABASE, "shared_pool_test");
+		cf.setProperty(PersistenceProperties.DB_POOL_SHARED, "true");
+		cf.setProperty(PersistenceProperties.DB_POOL_SHARED_MAXSIZE, "4");
+		cf.setProperty(PersistenceProperties.DB_POOL_MAXSIZE, "2");
+		PersistenceFactory pf = PersistenceFactory.get(cf);
+		PersistImpl<Dao1> p1 = (PersistImpl<Dao1>)pf.getPersist(Dao1.class, "shared1");
+		PersistImpl<Dao1> p2 = (PersistImpl<Dao1>)pf.getPersist(Dao1.class, "shared2");
+		assertSame(p1.pool, p2.pool);
+		assertEquals(4, p1.pool.getMaxConnections());
+		String key = p1.getPoolKey();
+		assertEquals(2, PersistenceFactory.getPoolRegistry().getUsers(key));
+		Dao1 d = new Dao1();
+		d.setId("1");
+		d.setData("test123");
+		p1.removeAll();
+		p2.removeAll();
+		p1.write(d);
+		p1.shutdown();
+		// pool is still usable for the other table
+		p2.write(d);
+		assertEquals(1, p2.getRowCount());
+		p2.shutdown();
+		assertEquals(0, PersistenceFactory.getPoolRegistry().getUsers(key));
+	}
+
+	@Test
+	public void testSharedPoolShutdown() throws Exception {
+		PersistenceProperties cf = new PersistenceProperties();
+		cf.setDatabaseDirectory("./target/test_data");
+		cf.setProperty(PersistenceProperties.DB_DATABASE, "shared_pool_shutdown_test");
+		cf.setProperty(PersistenceProperties.DB_POOL_SHARED, "true");
+		PoolRegistry registry = new PoolRegistry();
+		AtomicInteger shutdowns = new AtomicInteger();
+		List<H2Persist<Dao1>> tables = new ArrayList<>();
+		for(int i=0; i<4; i++){
+			H2Persist<Dao1> p = new H2Persist<>(Dao1.class, "shared_shutdown"+i){
+				@Override
+				protected String getSQLShutdown(){
+					shutdowns.incrementAndGet();
+					return super.getSQLShutdown();
+				}
+			};
+			p.setConfigSource(cf);
+			p.setPoolRegistry(registry);
+			p.init();
+			tables.add(p);
+		}
+		assertEquals(1, registry.size());
+		// only the last table shuts down the database, even if shut down concurrently
+		CountDownLatch start = new CountDownLatch(1);
+		List<Thread> threads = new ArrayList<>();
+		for(H2Persist<Dao1> p: tables){
+			Thread t = new Thread(() -> {
+				try{
+					start.await();
+					p.shutdown();
+				}catch(Exception e){}
+			});
+			t.start();
+			threads.add(t);
+		}
+		start.countDown();
+		for(Thread t: threads){
+			t.join();
+		}
+		assertEquals(1, shutdowns.get());
+		assertEquals(0, registry.size());
+	}
+
+	@Test
+	public void testCompression() throws Exception {
+		PersistenceProperties cf=new PersistenceProperties();
+		cf.setDatabaseDirectory("./target/test_data");
+		cf.setProperty(PersistenceProperties.DB_COMPRESS_ENABLE, "true");
+		cf.setProperty(PersistenceProperties.DB_COMPRESS_THRESHOLD, "0");
+		new Tester(H2Persist.class, cf).run();
+	}
+
+	@Test
+	public void testDistributedLocking() throws Exception {
+		PersistenceProperties cf = new PersistenceProperties();
+		cf.setDatabaseDirectory("./target/test_data");
+		cf.setProperty(PersistenceProperties.DB_LOCKS_DISTRIBUTED, "true");
+		// two instances with separate LockSupport, simulating two nodes
+		H2Persist<Dao1> node1 = new H2Persist<>(Dao1.class, "distributed");
+		node1.setConfigSource(cf);
+		node1.init();
+		node1.removeAll();
+		H2Persist<Dao1> node2 = new H2Persist<>(Dao1.class, "distributed");
+		node2.setConfigSource(cf);
+		node2.init();
+		assertNotSame(node1.getLockSupport(), node2.getLockSupport());
+
+		Dao1 d = new Dao1();
+		d.setId("1");
+		node1.write(d);
+
+		Dao1 locked = node1.getForUpdate("1");
+		assertNotNull(locked);
+		assertThrows(TimeoutException.class, ()->node2.getForUpdate("1", 200, TimeUnit.MILLISECONDS));
+		locked.setData("changed");
+		node1.write(locked);
+		Dao1 d2 = node2.getForUpdate("1", 200, TimeUnit.MILLISECONDS);
+		assertEquals("changed", d2.getData());
+		assertNull(node1.tryGetForUpdate("1"));
+		node2.unlock(d2);
+		assertNotNull(node1.tryGetForUpdate("1"));
+		node1.unlock(d);
+		node1.purge();
+		node1.shutdown();
+		node2.shutdown();
+	}
+
+	@Test
+	public void testDistributedLockingReadsFromStorage() throws Exception {
+		PersistenceProperties cf = new PersistenceProperties();
+		cf.setDatabaseDirectory("./target/test_data");
+		cf.setProperty(PersistenceProperties.DB_LOCKS_DISTRIBUTED, "true");
+		cf.setProperty(PersistenceProperties.DB_CACHE_ENABLE, "true");
+		H2Persist<Dao1> node1 = new H2Persist<>(Dao1.class, "distributed_cache");
+		node1.setConfigSource(cf);
+		node1.init();
+		node1.removeAll();
+		H2Persist<Dao1> node2 = new H2Persist<>(Dao1.class, "distributed_cache");
+		node2.setConfigSource(cf);
+		node2.init();
+
+		Dao1 d = new Dao1();
+		d.setId("1");
+		d.setData("initial");
+		node1.write(d);
+		// node2 now has the entity in its cache
+		assertEquals("initial", node2.read("1").getData());
+
+		Dao1 locked = node1.getForUpdate("1");
+		locked.setData("changed");
+		node1.write(locked);
+
+		Dao1 d2 = node2.getForUpdate("1", 1000, TimeUnit.MILLISECONDS);
+		assertEquals("changed", d2.getData());
+		node2.unlock(d2);
+		// the cache was refreshed as well
+		assertEquals("changed", node2.read("1").getData());
+		node1.purge();
+		node1.shutdown();
+		node2.shutdown();
+	}
+
+	@Test
+	public void testDistributedLockingRenewsLeases() throws Exception {
+		PersistenceProperties cf = new PersistenceProperties();
+		cf.setDatabaseDirectory("./target/test_data");
+		cf.setProperty(PersistenceProperties.DB_LOCKS_DISTRIBUTED, "true");
+		cf.setProperty(PersistenceProperties.DB_CLUSTER_LEASE_TIME, "1");
+		H2Persist<Dao1> node1 = new H2Persist<>(Dao1.class, "distributed_lease");
+		node1.setConfigSource(cf);
+		node1.init();
+		node1.removeAll();
+		H2Persist<Dao1> node2 = new H2Persist<>(Dao1.class, "distributed_lease");
+		node2.setConfigSource(cf);
+		node2.init();
+
+		Dao1 d = new Dao1();
+		d.setId("1");
+		node1.write(d);
+		Dao1 locked = node1.getForUpdate("1");
+		// hold the lock well past the lease time
+		Thread.sleep(2500);
+		assertThrows(TimeoutException.class, ()->node2.getForUpdate("1", 200, TimeUnit.MILLISECONDS));
+		locked.setData("changed");
+		node1.write(locked);
+		assertEquals("changed", node2.read("1").getData());
+
+		// removeAll() releases the leases held by the node
+		node1.getForUpdate("1");
+		node1.removeAll();
+		node2.lock("1", 200, TimeUnit.MILLISECONDS);
+		node2.unlock(d);
+		node1.purge();
+		node1.shutdown();
+		node2.shutdown();
+	}
+
 	@Test
 	public void testSerializableWrapper()throws Exception, 
 	InstantiationException, IllegalAccessException, TimeoutException, InterruptedException{
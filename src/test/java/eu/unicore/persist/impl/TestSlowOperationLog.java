@@ -0,0 +1,77 @@
+package eu.unicore.persist.impl;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import eu.unicore.persist.PersistenceProperties;
+import eu.unicore.persist.metrics.Operation;
+
+public class TestSlowOperationLog {
+
+	private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	@Test
+	public void testThresholds(){
+		SlowOperationLog log = new SlowOperationLog("test", 100, 50, 10);
+		assertTrue(log.isEnabled());
+		long now = System.nanoTime();
+		assertFalse(log.finished("SELECT 1", now));
+		log.poolWaited(80*MS);
+		log.decoded(10*MS);
+		assertTrue(log.finished("SELECT 1", now-200*MS));
+		assertFalse(log.lockWaited("1", 10*MS));
+		assertTrue(log.lockWaited("1", 60*MS));
+	}
+
+	@Test
+	public void testDisabled(){
+		SlowOperationLog log = new SlowOperationLog("test", 0, 0, 10);
+		assertFalse(log.isEnabled());
+		assertFalse(log.finished("SELECT 1", System.nanoTime()-1000*MS));
+		assertFalse(log.lockWaited("1", 1000*MS));
+	}
+
+	@Test
+	public void testRateLimit(){
+		SlowOperationLog log = new SlowOperationLog("test", 1, 1, 3);
+		long start = System.nanoTime()-10*MS;
+		for(int i=0; i<3; i++){
+			assertTrue(log.finished("SELECT 1", start));
+		}
+		assertFalse(log.finished("SELECT 1", start));
+		assertFalse(log.lockWaited("1", 10*MS));
+	}
+
+	@Test
+	public void testSlowLockWait() throws Exception {
+		PersistenceProperties cf = new PersistenceProperties();
+		cf.setProperty(PersistenceProperties.DB_SLOWLOG_LOCK_THRESHOLD, "10");
+		InMemory<Dao1> p = new InMemory<>(Dao1.class, null);
+		p.setConfigSource(cf);
+		p.init();
+		Dao1 d = new Dao1();
+		d.setId("1");
+		p.write(d);
+		CountDownLatch locked = new CountDownLatch(1);
+		Thread t = new Thread(() -> {
+			try{
+				Dao1 d1 = p.getForUpdate("1");
+				locked.countDown();
+				Thread.sleep(100);
+				p.write(d1);
+			}catch(Exception e){}
+		});
+		t.start();
+		locked.await();
+		// waits for the other thread to release the lock
+		p.unlock(p.getForUpdate("1"));
+		t.join();
+		assertTrue(p.getMetrics().getHistogram(Operation.LOCK_WAIT).getMax()>50*MS);
+	}
+
+}
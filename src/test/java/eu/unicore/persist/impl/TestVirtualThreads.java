@@ -0,0 +1,89 @@
+package eu.unicore.persist.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import eu.unicore.persist.PersistenceProperties;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * runs many virtual threads against H2Persist and checks (using JFR)
+ * that no carrier threads get pinned while blocking
+ */
+public class TestVirtualThreads {
+
+	private static final int THREADS = 5000;
+
+	@Test
+	public void testNoPinning() throws Exception {
+		ExecutorService executor = null;
+		try{
+			executor = (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}catch(ReflectiveOperationException e){}
+		assumeTrue(executor!=null, "Virtual threads not available");
+
+		H2Persist<Dao1> p = new H2Persist<>(Dao1.class, "virtualthreads");
+		PersistenceProperties cf = new PersistenceProperties();
+		cf.setDatabaseDirectory("target/test_data");
+		cf.setProperty(PersistenceProperties.DB_POOL_MAXSIZE, "4");
+		p.setConfigSource(cf);
+		p.setCaching(false);
+		p.init();
+		p.removeAll();
+
+		Path jfr = Files.createTempFile("virtualthreads", ".jfr");
+		AtomicInteger done = new AtomicInteger();
+		Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+		try(Recording recording = new Recording()){
+			recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+			recording.start();
+			for(int i=0; i<THREADS; i++){
+				final String id = String.valueOf(i);
+				executor.execute(() -> {
+					try{
+						Dao1 d = new Dao1();
+						d.setId(id);
+						p.write(d);
+						assertNotNull(p.read(id));
+						p.getIDPage(10, null, false);
+						done.incrementAndGet();
+					}catch(Throwable e){
+						failures.add(e);
+					}
+				});
+			}
+			executor.shutdown();
+			assertTrue(executor.awaitTermination(300, TimeUnit.SECONDS), "Timeout waiting for the threads");
+			recording.stop();
+			recording.dump(jfr);
+		}
+		assertTrue(failures.isEmpty(), failures.size()+" threads failed, first error: "+failures.peek());
+		assertEquals(THREADS, done.get());
+		assertEquals(THREADS, p.getRowCount());
+		List<RecordedEvent> pinned = RecordingFile.readAllEvents(jfr).stream()
+				.filter(e -> e.getEventType().getName().equals("jdk.VirtualThreadPinned"))
+				.toList();
+		Files.delete(jfr);
+		assertEquals(0, pinned.size(), "Carrier threads were pinned: "+pinned);
+		p.purge();
+		p.shutdown();
+	}
+
+}
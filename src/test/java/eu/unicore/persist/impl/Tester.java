@@ -4,16 +4,23 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.Disabled;
 
+import eu.unicore.persist.IDPage;
 import eu.unicore.persist.Persist;
 import eu.unicore.persist.PersistenceProperties;
 
@@ -45,6 +52,12 @@ public class Tester {
 		testAdditionalColumns(false);
 		testAdditionalColumns(true);
 		testFindIDs(true);
+		testWriteAll(false);
+		testWriteAll(true);
+		testReadAll(false);
+		testReadAll(true);
+		testStreaming();
+		testPaging();
 		testLocking();
 		testManualLocking();
 	}
@@ -178,6 +191,199 @@ public class Tester {
 		p.shutdown();
 	}
 	
+	@SuppressWarnings("unchecked")
+	private void testWriteAll(boolean cache)throws Exception{
+		final Persist<Dao2>p = (Persist<Dao2>)persistClass.getConstructor(Class.class, String.class).
+				newInstance(Dao2.class, null);
+		p.setCaching(cache);
+		if(properties!=null)p.setConfigSource(properties);
+		p.init();
+		p.removeAll();
+
+		List<Dao2> entries = new ArrayList<>();
+		for(int i=0; i<100; i++){
+			Dao2 d = new Dao2();
+			d.setId(String.valueOf(i));
+			d.setData("testdata-"+i);
+			d.setField(i%2==0 ? "even" : "odd");
+			entries.add(d);
+		}
+		p.writeAll(entries);
+		assertEquals(100, p.getRowCount());
+		assertEquals(50, p.getRowCount("foo", "even"));
+
+		// update existing entries and add a new one
+		Dao2 updated = p.getForUpdate("1");
+		updated.setField("even");
+		Dao2 added = new Dao2();
+		added.setId("100");
+		added.setField("odd");
+		p.writeAll(List.of(updated, added));
+		assertEquals(101, p.getRowCount());
+		assertEquals(51, p.getRowCount("foo", "even"));
+		assertEquals("even", p.read("1").getField());
+		assertEquals("testdata-1", p.read("1").getData());
+		// lock must have been released
+		final AtomicBoolean CAN_LOCK = new AtomicBoolean(false);
+		Thread t = new Thread(() -> {
+			try{
+				Dao2 d = p.tryGetForUpdate("1");
+				CAN_LOCK.set(d!=null);
+				if(d!=null)p.unlock(d);
+			}catch(Exception ex) {}
+		});
+		t.start();
+		t.join();
+		assertTrue(CAN_LOCK.get());
+
+		// duplicate IDs
+		updated = p.getForUpdate("1");
+		p.writeAll(List.of(updated, updated));
+		t = new Thread(() -> {
+			try{
+				Dao2 d = p.tryGetForUpdate("1");
+				CAN_LOCK.set(d!=null);
+				if(d!=null)p.unlock(d);
+			}catch(Exception ex) {}
+		});
+		t.start();
+		t.join();
+		assertTrue(CAN_LOCK.get());
+
+		// failure to lock one of the entries must not release the other locks
+		updated = p.getForUpdate("1");
+		CountDownLatch locked = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(1);
+		t = new Thread(() -> {
+			try{
+				p.getForUpdate("2");
+				locked.countDown();
+				done.await();
+				p.unlock(p.read("2"));
+			}catch(Exception ex) {}
+		});
+		t.start();
+		locked.await();
+		Dao2 other = p.read("2");
+		final Dao2 first = updated;
+		assertThrows(IllegalStateException.class, () -> p.writeAll(List.of(first, other)));
+		Thread t2 = new Thread(() -> {
+			try{
+				Dao2 d = p.tryGetForUpdate("1");
+				CAN_LOCK.set(d!=null);
+				if(d!=null)p.unlock(d);
+			}catch(Exception ex) {}
+		});
+		t2.start();
+		t2.join();
+		assertFalse(CAN_LOCK.get());
+		done.countDown();
+		t.join();
+		p.write(updated);
+		p.shutdown();
+	}
+
+	@SuppressWarnings("unchecked")
+	private void testReadAll(boolean cache)throws Exception{
+		Persist<Dao1>p = (Persist<Dao1>)persistClass.getConstructor(Class.class, String.class).
+				newInstance(Dao1.class, null);
+		p.setCaching(cache);
+		if(properties!=null)p.setConfigSource(properties);
+		p.init();
+		p.removeAll();
+		List<String> ids = new ArrayList<>();
+		for(int i=0; i<300; i++){
+			Dao1 d = new Dao1();
+			d.setId(String.valueOf(i));
+			d.setData("testdata-"+i);
+			p.write(d);
+			ids.add(d.getId());
+		}
+		// populate cache with some entries
+		p.read("1");
+		p.read("2");
+		ids.add("no-such-id");
+		Map<String,Dao1> result = p.readAll(ids);
+		assertEquals(300, result.size());
+		assertEquals("testdata-1", result.get("1").getData());
+		assertEquals("testdata-299", result.get("299").getData());
+		assertFalse(result.containsKey("no-such-id"));
+		result = p.readAll(List.of("5", "7", "5"));
+		assertEquals(2, result.size());
+		assertEquals("testdata-7", result.get("7").getData());
+		p.shutdown();
+	}
+
+	@SuppressWarnings("unchecked")
+	private void testStreaming()throws Exception{
+		Persist<Dao1>p = (Persist<Dao1>)persistClass.getConstructor(Class.class, String.class).
+				newInstance(Dao1.class, null);
+		if(properties!=null)p.setConfigSource(properties);
+		p.init();
+		p.removeAll();
+		for(int i=0; i<50; i++){
+			Dao1 d = new Dao1();
+			d.setId(String.valueOf(i));
+			d.setData("testdata-"+i);
+			p.write(d);
+		}
+		try(Stream<String> ids = p.streamIDs(true)){
+			assertEquals(50, ids.collect(Collectors.toSet()).size());
+		}
+		try(Stream<Dao1> entries = p.streamAll()){
+			assertEquals(50, entries.filter(d -> d.getData().equals("testdata-"+d.getId())).count());
+		}
+		AtomicInteger count = new AtomicInteger();
+		p.forEach(d -> count.incrementAndGet());
+		assertEquals(50, count.get());
+		// closing a partially consumed stream must release the connection
+		for(int i=0; i<5; i++){
+			try(Stream<Dao1> entries = p.streamAll()){
+				assertNotNull(entries.findFirst().get());
+			}
+		}
+		assertEquals(50, p.getRowCount());
+		p.shutdown();
+	}
+
+	@SuppressWarnings("unchecked")
+	private void testPaging()throws Exception{
+		Persist<Dao1>p = (Persist<Dao1>)persistClass.getConstructor(Class.class, String.class).
+				newInstance(Dao1.class, null);
+		if(properties!=null)p.setConfigSource(properties);
+		p.init();
+		p.removeAll();
+		for(int i=0; i<25; i++){
+			Dao1 d = new Dao1();
+			d.setId(String.format("%03d", i));
+			p.write(d);
+		}
+		for(boolean oldestFirst: new boolean[]{true, false}){
+			List<String> all = p.getIDs(oldestFirst);
+			List<String> paged = new ArrayList<>();
+			String cursor = null;
+			IDPage page;
+			do{
+				page = p.getIDPage(10, cursor, oldestFirst);
+				assertTrue(page.getIDs().size()<=10);
+				paged.addAll(page.getIDs());
+				cursor = page.getNext();
+			}while(page.hasNext());
+			assertEquals(25, paged.size());
+			assertEquals(all, paged);
+		}
+		// deleting the last entry of a page does not affect getting the next page
+		IDPage page = p.getIDPage(10, null, true);
+		String last = page.getIDs().get(9);
+		p.remove(last);
+		IDPage next = p.getIDPage(10, page.getNext(), true);
+		assertEquals(10, next.getIDs().size());
+		List<String> all = p.getIDs(true);
+		assertEquals(all.subList(9, 19), next.getIDs());
+		assertThrows(IllegalArgumentException.class, () -> p.getIDPage(10, "no-such-cursor", true));
+		p.shutdown();
+	}
+
 	@SuppressWarnings("unchecked")
 	private void testLocking() throws Exception {
 		final Persist<Dao1>p = (Persist<Dao1>)persistClass.getConstructor(Class.class, String.class).
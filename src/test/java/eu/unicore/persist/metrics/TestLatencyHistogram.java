@@ -0,0 +1,53 @@
+package eu.unicore.persist.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class TestLatencyHistogram {
+
+	@Test
+	public void testBuckets(){
+		for(long v: new long[]{0, 1, 7, 8, 9, 15, 16, 1000, 123456789, 1L<<40}){
+			int i = LatencyHistogram.index(v);
+			assertTrue(LatencyHistogram.upperLimit(i)>=v);
+			if(i>0)assertTrue(LatencyHistogram.upperLimit(i-1)<v);
+		}
+	}
+
+	@Test
+	public void testPercentiles(){
+		LatencyHistogram h = new LatencyHistogram();
+		assertEquals(0, h.getPercentile(0.5));
+		for(int i=1; i<=1000; i++){
+			h.record(i*1000);
+		}
+		assertEquals(1000, h.getCount());
+		assertEquals(1000000, h.getMax());
+		assertEquals(500500, h.getMean(), 0.1);
+		long p50 = h.getPercentile(0.5);
+		long p99 = h.getPercentile(0.99);
+		assertTrue(p50>=500000 && p50<=500000*1.125, "p50="+p50);
+		assertTrue(p99>=990000 && p99<=1000000, "p99="+p99);
+		h.reset();
+		assertEquals(0, h.getCount());
+		assertEquals(0, h.getPercentile(0.99));
+	}
+
+	@Test
+	public void testConcurrentRecording() throws Exception {
+		LatencyHistogram h = new LatencyHistogram();
+		Thread[] threads = new Thread[8];
+		for(int i=0; i<threads.length; i++){
+			threads[i] = new Thread(() -> {
+				for(int j=0; j<10000; j++)h.record(j);
+			});
+			threads[i].start();
+		}
+		for(Thread t: threads)t.join();
+		assertEquals(80000, h.getCount());
+		assertEquals(9999, h.getMax());
+	}
+
+}
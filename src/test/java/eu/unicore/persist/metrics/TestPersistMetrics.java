@@ -0,0 +1,20 @@
+package eu.unicore.persist.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+public class TestPersistMetrics {
+
+	@Test
+	public void testUtf8Length(){
+		String[] values = {"", "test123", "{\"data\":\"gr\u00fc\u00dfe\"}", "\u20ac100",
+				"\ud83d\ude00 smile", "unpaired \ud83d", "unpaired \ude00 low"};
+		for(String v: values){
+			assertEquals(v.getBytes(StandardCharsets.UTF_8).length, PersistMetrics.utf8Length(v));
+		}
+	}
+
+}
@@ -1,15 +1,22 @@
 package eu.unicore.persist.util;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 
+import java.io.FileReader;
+
 import java.util.Properties;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+
 import org.junit.jupiter.api.Test;
 
 import eu.unicore.persist.Persist;
 import eu.unicore.persist.PersistenceFactory;
 import eu.unicore.persist.PersistenceProperties;
 import eu.unicore.persist.impl.Dao1;
+import eu.unicore.persist.impl.Dao3;
 import eu.unicore.persist.impl.H2Persist;
 
 public class TestExportImport {
@@ -36,6 +43,43 @@ public class TestExportImport {
 		export.doExport();
 	}
 
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testExportSkipsUnreadableEntries() throws Exception{
+		Properties in=new Properties();
+		in.setProperty("class", Dao3.class.getName());
+		in.setProperty("persistence.class", H2Persist.class.getName());
+		in.setProperty("persistence."+PersistenceProperties.DB_DIRECTORY, "target/testdata");
+		in.setProperty("persistence."+PersistenceProperties.DB_MARSHALLER, "binary");
+		in.setProperty("tableName", "export_binary");
+		PersistenceFactory pf = PersistenceFactory.get(new PersistenceProperties(in));
+		Persist<Dao3> writer = pf.getPersist(Dao3.class, "export_binary");
+		writer.removeAll();
+		for(int i=0; i<3; i++){
+			Dao3 x=new Dao3();
+			x.setId("ok-"+i);
+			x.setData(i);
+			writer.write(x);
+		}
+		// entries written by a different class cannot be decoded as Dao3
+		Persist<Dao1> other = pf.getPersist(Dao1.class, "export_binary");
+		for(int i=0; i<2; i++){
+			Dao1 x=new Dao1();
+			x.setId("bad-"+i);
+			other.write(x);
+		}
+		String json = "target/exported_errors.json";
+		Export export=new Export(in, json);
+		export.doExport();
+		try(FileReader r = new FileReader(json)){
+			JsonArray exported = JsonParser.parseReader(r).getAsJsonArray();
+			assertEquals(3, exported.size());
+		}
+		export.shutdown();
+		other.shutdown();
+		writer.shutdown();
+	}
+
 	@Test
 	@SuppressWarnings("unchecked")
 	public void testImport() throws Exception{
@@ -1,18 +1,30 @@
 package eu.unicore.persist.util;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
 
+import javax.sql.ConnectionEvent;
+import javax.sql.ConnectionEventListener;
 import javax.sql.ConnectionPoolDataSource;
+import javax.sql.PooledConnection;
 
 import org.junit.jupiter.api.Test;
 
 public class TestPool {
 
 	private static final int maxConnections = 8; // number of connections
-	private static final int noOfThreads = 50; // number of worker threads
+	private static final int noOfThreads = 64; // number of worker threads
 	private static final int processingTime = 30; // total processing time of
 													// the test program in
 													// seconds
@@ -28,6 +40,7 @@ public class TestPool {
 	private static boolean shutdownFlag;
 	private static Object shutdownObj = new Object();
 	private static Random random = new Random();
+	private static final AtomicLong tasks = new AtomicLong();
 
 
 	@Test
@@ -36,15 +49,119 @@ public class TestPool {
 		ConnectionPoolDataSource dataSource = createDataSource();
 		poolMgr = new Pool(dataSource, maxConnections);
 		initDb();
+		long start = System.currentTimeMillis();
 		startWorkerThreads();
 		pause(processingTime * 1000000);
 		System.out.println("\nStopping threads.");
 		stopWorkerThreads();
+		long time = System.currentTimeMillis() - start;
+		System.out.println("Tasks completed: " + tasks.get() + ", throughput: "
+				+ (1000 * tasks.get() / time) + " tasks/sec.");
 		System.out.println("\nAll threads stopped.");
 		poolMgr.dispose();
 		System.out.println("Program completed.");
 	}
 	
+	@Test
+	public void testHousekeeping() throws Exception {
+		Pool pool = new Pool(createDataSource(), 4);
+		pool.setMinIdle(1);
+		pool.setValidationThreshold(0);
+		pool.housekeeping();
+		assertEquals(1, pool.getIdleConnections());
+		Connection[] conns = new Connection[3];
+		for(int i=0; i<conns.length; i++) {
+			conns[i] = pool.getConnection();
+		}
+		assertEquals(3, pool.getActiveConnections());
+		assertEquals(0, pool.getIdleConnections());
+		for(Connection c: conns) {
+			c.close();
+		}
+		assertEquals(0, pool.getActiveConnections());
+		assertEquals(3, pool.getIdleConnections());
+		// no idle timeout: connections are kept
+		pool.housekeeping();
+		assertEquals(3, pool.getIdleConnections());
+		// idle connections are closed down to the minimum
+		pool.setIdleTimeout(50);
+		Thread.sleep(100);
+		pool.housekeeping();
+		assertEquals(1, pool.getIdleConnections());
+		try(Connection c = pool.getConnection()){
+			assertTrue(c.isValid(1));
+		}
+		// connections are replaced after their lifetime
+		pool.setMaxLifetime(50);
+		Thread.sleep(100);
+		pool.housekeeping();
+		assertEquals(1, pool.getIdleConnections());
+		pool.dispose();
+		assertEquals(0, pool.getIdleConnections());
+	}
+
+	@Test
+	public void testQuota() throws Exception {
+		Pool pool = new Pool(createDummyDataSource(), 4, 1);
+		Semaphore quota1 = new Semaphore(2);
+		Semaphore quota2 = new Semaphore(3);
+		Connection c1 = pool.getConnection(quota1);
+		Connection c2 = pool.getConnection(quota1);
+		// quota exceeded
+		assertThrows(SQLException.class, () -> pool.getConnection(quota1));
+		Connection c3 = pool.getConnection(quota2);
+		Connection c4 = pool.getConnection(quota2);
+		// pool exhausted, quota permit must be returned
+		assertThrows(SQLException.class, () -> pool.getConnection(quota2));
+		assertEquals(1, quota2.availablePermits());
+		assertEquals(4, pool.getActiveConnections());
+		c1.close();
+		assertEquals(1, quota1.availablePermits());
+		pool.getConnection(quota2).close();
+		for(Connection c: new Connection[]{c2, c3, c4}) {
+			c.close();
+		}
+		assertEquals(2, quota1.availablePermits());
+		assertEquals(3, quota2.availablePermits());
+		assertEquals(0, pool.getActiveConnections());
+		pool.dispose();
+	}
+
+	/**
+	 * data source creating dummy connections that only support close()
+	 */
+	private static ConnectionPoolDataSource createDummyDataSource() {
+		return (ConnectionPoolDataSource)Proxy.newProxyInstance(TestPool.class.getClassLoader(),
+				new Class<?>[]{ConnectionPoolDataSource.class}, (proxy, method, args) -> {
+			if(!method.getName().equals("getPooledConnection"))return null;
+			List<ConnectionEventListener> listeners = new CopyOnWriteArrayList<>();
+			PooledConnection[] pc = new PooledConnection[1];
+			pc[0] = (PooledConnection)Proxy.newProxyInstance(TestPool.class.getClassLoader(),
+					new Class<?>[]{PooledConnection.class}, (proxy2, method2, args2) -> {
+				switch(method2.getName()) {
+				case "addConnectionEventListener":
+					listeners.add((ConnectionEventListener)args2[0]);
+					return null;
+				case "removeConnectionEventListener":
+					listeners.remove(args2[0]);
+					return null;
+				case "getConnection":
+					return Proxy.newProxyInstance(TestPool.class.getClassLoader(),
+							new Class<?>[]{Connection.class}, (proxy3, method3, args3) -> {
+						if(method3.getName().equals("close")) {
+							ConnectionEvent e = new ConnectionEvent(pc[0]);
+							listeners.forEach(l -> l.connectionClosed(e));
+						}
+						return method3.getReturnType()==boolean.class ? Boolean.TRUE : null;
+					});
+				default:
+					return null;
+				}
+			});
+			return pc[0];
+		});
+	}
+
 	private static class WorkerThread extends Thread {
 		public int threadNo;
 
@@ -110,6 +227,7 @@ public class TestPool {
 			
 			incrementThreadCounter(conn, threadNo);
 			pauseRandom(threadPauseTime2);
+			tasks.incrementAndGet();
 		} finally {
 			if (conn != null)
 				conn.close();
@@ -0,0 +1,34 @@
+package eu.unicore.persist.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class TestPoolRegistry {
+
+	@Test
+	public void testSharing() throws Exception {
+		PoolRegistry registry = new PoolRegistry();
+		Pool p1 = registry.acquire("db1", () -> new Pool(null, 4));
+		Pool p2 = registry.acquire("db1", () -> new Pool(null, 4));
+		Pool p3 = registry.acquire("db2", () -> new Pool(null, 4));
+		assertSame(p1, p2);
+		assertNotSame(p1, p3);
+		assertEquals(2, registry.size());
+		assertEquals(2, registry.getUsers("db1"));
+		assertFalse(registry.release("db1"));
+		assertSame(p1, registry.get("db1"));
+		assertTrue(registry.release("db1"));
+		assertNull(registry.get("db1"));
+		assertEquals(0, registry.getUsers("db1"));
+		assertFalse(registry.release("db1"));
+		assertTrue(registry.release("db2"));
+		assertEquals(0, registry.size());
+	}
+
+}